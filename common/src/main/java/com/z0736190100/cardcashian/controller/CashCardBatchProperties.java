@@ -0,0 +1,29 @@
+package com.z0736190100.cardcashian.controller;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Limits of the {@code /cashcards/batch} endpoints.
+ *
+ * @param chunkSize number of cards written per JDBC batch
+ * @param maxItems  largest accepted request, bigger ones are rejected with 400
+ */
+@ConfigurationProperties("cardcashian.batch")
+public record CashCardBatchProperties(@DefaultValue("500") int chunkSize,
+                                      @DefaultValue("10000") int maxItems) {
+
+    /**
+     * Consecutive views of at most {@link #chunkSize} items, each written as one batch.
+     */
+    public <T> List<List<T>> chunksOf(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += chunkSize) {
+            chunks.add(items.subList(from, Math.min(from + chunkSize, items.size())));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,75 @@
+package com.z0736190100.cardcashian.controller;
+
+import com.z0736190100.cardcashian.model.CashCard;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Header values of the CashCard API, the same for the servlet and the reactive application: ETags and the
+ * {@code If-Match} versions they match, and the opaque cursors of the keyset mode.
+ */
+public final class CashCardHeaders {
+
+    public static final String NEXT_CURSOR = "Next-Cursor";
+
+    private CashCardHeaders() {
+    }
+
+    public static String eTagOf(Object version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Weak ETag of a page of cards: a hash of every card's (id, version) on the page and of the cursor to the next
+     * one, so it changes exactly when the page does, whatever happens to the owner's other cards. Weak: the same
+     * page may go out as JSON, CBOR or Smile, gzipped or not (and Tomcat never compresses strong ETags).
+     */
+    public static String eTagOfPage(List<CashCard> cashCards, String nextCursor) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        ByteBuffer card = ByteBuffer.allocate(2 * Long.BYTES);
+        for (CashCard cashCard : cashCards) {
+            digest.update(card.clear().putLong(cashCard.id()).putLong(cashCard.version()).array());
+        }
+        if (nextCursor != null) {
+            digest.update(nextCursor.getBytes(StandardCharsets.US_ASCII));
+        }
+        return "W/\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+    /**
+     * Whether any of the given ETags is the strong ETag of {@code version} (weak ETags never match for If-Match), so
+     * that {@code If-Match: "3", "7"} lets an update of version 7 through.
+     */
+    public static boolean matches(List<String> eTags, long version) {
+        String eTag = eTagOf(version);
+        for (String candidate : eTags) {
+            if (candidate.trim().equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static String encodeCursor(long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is not one of ours
+     */
+    public static long decodeCursor(String cursor) {
+        return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+    }
+}
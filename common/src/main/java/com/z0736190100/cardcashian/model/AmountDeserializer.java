@@ -0,0 +1,33 @@
+package com.z0736190100.cardcashian.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Reads a JSON decimal number such as {@code 123.45} into minor units (cents), {@code 12345}.
+ * Amounts with more than two significant decimal places are rejected rather than rounded.
+ */
+public class AmountDeserializer extends StdDeserializer<Long> {
+
+    public AmountDeserializer() {
+        super(Long.class);
+    }
+
+    @Override
+    public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.currentToken().isNumeric()) {
+            return (Long) context.handleUnexpectedToken(Long.class, parser);
+        }
+        // parsed from the JSON text, no binary floating point involved
+        BigDecimal amount = parser.getDecimalValue();
+        try {
+            return amount.movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw context.weirdNumberException(amount, Long.class, "not an amount with at most two decimal places");
+        }
+    }
+}
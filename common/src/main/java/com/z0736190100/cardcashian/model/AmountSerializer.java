@@ -0,0 +1,58 @@
+package com.z0736190100.cardcashian.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Writes an amount held in minor units (cents) as a JSON decimal number with two decimal places,
+ * e.g. {@code 12345} as {@code 123.45}, without going through {@code BigDecimal} or {@code String}.
+ * Binary formats (CBOR, Smile) get a native decimal of scale 2 instead, they have no textual number to format.
+ */
+public class AmountSerializer extends StdSerializer<Long> {
+
+    // 19 digits of Long.MIN_VALUE, sign, decimal point and a leading zero
+    private static final int MAX_LENGTH = 22;
+
+    // one per thread instead of one per amount: the generator copies the characters before writeNumber returns
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[MAX_LENGTH]);
+
+    public AmountSerializer() {
+        super(Long.class);
+    }
+
+    @Override
+    public void serialize(Long minorUnits, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        // not canWriteFormattedNumbers(): JSON generators answer false to it as well
+        if (generator.canWriteBinaryNatively()) {
+            generator.writeNumber(BigDecimal.valueOf(minorUnits, 2));
+            return;
+        }
+        char[] buffer = BUFFER.get();
+        int start = format(minorUnits, buffer);
+        generator.writeNumber(buffer, start, MAX_LENGTH - start);
+    }
+
+    // fills the buffer from its end, returns the index of the first character
+    private static int format(long minorUnits, char[] buffer) {
+        // negative arithmetic, Long.MIN_VALUE has no positive counterpart
+        long remaining = minorUnits < 0 ? minorUnits : -minorUnits;
+        int position = buffer.length;
+        for (int i = 0; i < 2; i++) {
+            buffer[--position] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        }
+        buffer[--position] = '.';
+        do {
+            buffer[--position] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (minorUnits < 0) {
+            buffer[--position] = '-';
+        }
+        return position;
+    }
+}
@@ -0,0 +1,26 @@
+package com.z0736190100.cardcashian.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+
+/**
+ * @param amount  in minor units (cents), exposed in JSON as a decimal number, e.g. {@code 12345} as {@code 123.45};
+ *                required in JSON, a card without one is rejected rather than read as {@code 0}
+ * @param version incremented on every update, {@code null} for a card that was not saved yet; not part of the JSON,
+ *                clients see it as the card's ETag
+ */
+public record CashCard(@Id Long id,
+                       @JsonSerialize(using = AmountSerializer.class)
+                       @JsonDeserialize(using = AmountDeserializer.class)
+                       long amount,
+                       String owner,
+                       @Version @JsonIgnore Long version) {
+
+    public CashCard(Long id, long amount, String owner) {
+        this(id, amount, owner, null);
+    }
+}
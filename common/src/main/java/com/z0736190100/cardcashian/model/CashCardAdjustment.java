@@ -0,0 +1,14 @@
+package com.z0736190100.cardcashian.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Signed change applied to a card's amount, e.g. {@code 10.00} for a top-up or {@code -2.50} for a payment.
+ *
+ * @param delta in minor units (cents), like {@link CashCard#amount()}
+ */
+public record CashCardAdjustment(@JsonSerialize(using = AmountSerializer.class)
+                                 @JsonDeserialize(using = AmountDeserializer.class)
+                                 Long delta) {
+}
@@ -0,0 +1,12 @@
+package com.z0736190100.cardcashian.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.net.URI;
+
+/**
+ * Outcome of one element of a batch request, {@code status} is what the single-card endpoint would have answered.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CashCardBatchResult(Long id, int status, URI location) {
+}
@@ -0,0 +1,29 @@
+package com.z0736190100.cardcashian.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Data of one event of {@code GET /cashcards/changes}; what happened is the event's name ({@code created},
+ * {@code updated}, {@code adjusted} or {@code deleted}).
+ *
+ * @param amount the card's new amount in minor units, for created and updated cards
+ * @param delta  the amount added to the card in minor units, for adjusted cards
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CashCardChange(Long id,
+                             @JsonSerialize(using = AmountSerializer.class) Long amount,
+                             @JsonSerialize(using = AmountSerializer.class) Long delta) {
+
+    public static CashCardChange ofAmount(Long id, long amount) {
+        return new CashCardChange(id, amount, null);
+    }
+
+    public static CashCardChange ofDelta(Long id, long delta) {
+        return new CashCardChange(id, null, delta);
+    }
+
+    public static CashCardChange of(Long id) {
+        return new CashCardChange(id, null, null);
+    }
+}
@@ -0,0 +1,24 @@
+package com.z0736190100.cardcashian.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Aggregates over all cards of one owner, amounts in minor units like {@link CashCard#amount()}.
+ *
+ * @param minAmount {@code null} if the owner has no cards
+ * @param maxAmount {@code null} if the owner has no cards
+ */
+public record CashCardSummary(long cardCount,
+                              @JsonSerialize(using = AmountSerializer.class)
+                              @JsonDeserialize(using = AmountDeserializer.class)
+                              long total,
+                              @JsonSerialize(using = AmountSerializer.class)
+                              @JsonDeserialize(using = AmountDeserializer.class)
+                              Long minAmount,
+                              @JsonSerialize(using = AmountSerializer.class)
+                              @JsonDeserialize(using = AmountDeserializer.class)
+                              Long maxAmount) {
+
+    public static final CashCardSummary EMPTY = new CashCardSummary(0, 0, null, null);
+}
@@ -0,0 +1,19 @@
+package com.z0736190100.cardcashian.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the verified-credentials cache in front of the BCrypt password check.
+ *
+ * @param enabled whether successful password checks are cached at all
+ * @param maxSize upper bound of cached credentials, least recently used ones are evicted first
+ * @param ttl     how long a verified credential is trusted before BCrypt runs again
+ */
+@ConfigurationProperties("cardcashian.security.credential-cache")
+public record CredentialCacheProperties(@DefaultValue("true") boolean enabled,
+                                        @DefaultValue("10000") long maxSize,
+                                        @DefaultValue("5m") Duration ttl) {
+}
@@ -0,0 +1,36 @@
+
+CREATE TABLE cash_card
+(
+    ID     BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    -- minor units (cents), exact and summable without floating point drift
+    AMOUNT BIGINT NOT NULL DEFAULT 0,
+    OWNER VARCHAR(256) NOT NULL,
+    -- incremented by every UPDATE, a card's ETag
+    VERSION BIGINT NOT NULL DEFAULT 0
+);
+
+-- every query is scoped by owner; also serves the keyset (cursor) pagination seek
+CREATE INDEX cash_card_owner_id_idx ON cash_card (OWNER, ID);
+-- sorting an owner's cards by amount, smallest/largest amount of the summary
+CREATE INDEX cash_card_owner_amount_idx ON cash_card (OWNER, AMOUNT);
+
+-- per-owner running totals, only maintained with cardcashian.summary.running-totals=true
+CREATE TABLE cash_card_owner_total
+(
+    OWNER      VARCHAR(256) NOT NULL PRIMARY KEY,
+    CARD_COUNT BIGINT       NOT NULL,
+    TOTAL      BIGINT       NOT NULL
+);
+
+-- Idempotency-Key of POST /cashcards -> the card it created, only used with cardcashian.idempotency.store=jdbc
+CREATE TABLE cash_card_idempotency_key
+(
+    OWNER           VARCHAR(256) NOT NULL,
+    IDEMPOTENCY_KEY VARCHAR(255) NOT NULL,
+    CASH_CARD_ID    BIGINT       NOT NULL,
+    CREATED_AT      TIMESTAMP    NOT NULL,
+    PRIMARY KEY (OWNER, IDEMPOTENCY_KEY)
+);
+
+-- purging expired keys
+CREATE INDEX cash_card_idempotency_key_created_at_idx ON cash_card_idempotency_key (CREATED_AT);
@@ -0,0 +1,65 @@
+package com.z0736190100.cardcashian.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingPasswordEncoderTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CachingPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        encoder = new CachingPasswordEncoder(bcrypt, new CredentialCacheProperties(true, 100, Duration.ofMinutes(5)),
+                meterRegistry);
+    }
+
+    @Test
+    void shouldServeRepeatedSuccessfulCheckFromCache() {
+        String stored = encoder.encode("abc123");
+
+        assertThat(encoder.matches("abc123", stored)).isTrue();
+        assertThat(encoder.matches("abc123", stored)).isTrue();
+
+        assertThat(gets("miss")).isEqualTo(1);
+        assertThat(gets("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNeverCacheFailedCheck() {
+        String stored = encoder.encode("abc123");
+
+        assertThat(encoder.matches("BAD-PASSWORD", stored)).isFalse();
+        assertThat(encoder.matches("BAD-PASSWORD", stored)).isFalse();
+
+        assertThat(gets("hit")).isZero();
+    }
+
+    @Test
+    void shouldNotAcceptOldPasswordAfterPasswordChange() {
+        String oldStored = encoder.encode("abc123");
+        assertThat(encoder.matches("abc123", oldStored)).isTrue();
+
+        String newStored = encoder.encode("new-secret");
+
+        assertThat(encoder.matches("abc123", newStored)).isFalse();
+        assertThat(encoder.matches("new-secret", newStored)).isTrue();
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", CachingPasswordEncoder.CACHE_NAME)
+                .tag("result", result)
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,108 @@
+package com.z0736190100.cardcashian;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Closed-loop HTTP load for the {@code load} tagged tests: keeps a fixed number of requests in flight
+ * without a client thread per request and records the latency of every one of them.
+ * <p>
+ * The server runs in the same JVM, so the footprint reported along with the latencies is the server's plus
+ * this client's: heap retained per open connection (measured after a GC, before and after the run, while the
+ * connections are kept alive) and the peak number of live threads.
+ */
+public class LoadGenerator {
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final String authorization;
+
+    public LoadGenerator(String username, String password) {
+        this.authorization = "Basic " + Base64.getEncoder()
+                .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Result run(int requests, int concurrency, IntFunction<HttpRequest.Builder> request) throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicInteger failures = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(concurrency);
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[requests];
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long heapBefore = usedHeapAfterGc();
+        threads.resetPeakThreadCount();
+
+        long started = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            int index = i;
+            long sent = System.nanoTime();
+            responses[i] = httpClient
+                    .sendAsync(request.apply(i).header("Authorization", authorization).build(),
+                            HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        if (error != null || response.statusCode() >= 400) {
+                            failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(responses).exceptionally(error -> null).join();
+        long elapsed = System.nanoTime() - started;
+        long heapPerConnection = Math.max(0, usedHeapAfterGc() - heapBefore) / concurrency;
+
+        Arrays.sort(latencies);
+        return new Result(latencies, failures.get(), elapsed, heapPerConnection, threads.getPeakThreadCount());
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    public static HttpRequest.Builder get(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).GET();
+    }
+
+    public static HttpRequest.Builder postJson(String uri, String json) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json));
+    }
+
+    public record Result(long[] sortedLatencies, int failures, long elapsedNanos,
+                         long heapBytesPerConnection, int peakThreads) {
+
+        public Duration percentile(double percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return Duration.ofNanos(sortedLatencies[Math.max(index, 0)]);
+        }
+
+        public double requestsPerSecond() {
+            return sortedLatencies.length / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests, %d failed, %.0f req/s, p50 %d ms, p99 %d ms, max %d ms, "
+                            + "%d KiB heap per connection, %d threads",
+                    sortedLatencies.length, failures, requestsPerSecond(),
+                    percentile(50).toMillis(), percentile(99).toMillis(), percentile(100).toMillis(),
+                    heapBytesPerConnection / 1024, peakThreads);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+INSERT INTO CASH_CARD(ID, AMOUNT, OWNER) VALUES (99, 12345, 'sarah1');
+INSERT INTO CASH_CARD(ID, AMOUNT, OWNER) VALUES (100, 100, 'sarah1');
+INSERT INTO CASH_CARD(ID, AMOUNT, OWNER) VALUES (101, 15000, 'sarah1');
+INSERT INTO CASH_CARD(ID, AMOUNT, OWNER) VALUES (102, 20000, 'kumar2');
+-- generated ids start above the fixed ids of the rows above
+ALTER TABLE CASH_CARD ALTER COLUMN ID RESTART WITH 1000;
@@ -0,0 +1,20 @@
+package com.z0736190100.cardcashian.reactive;
+
+import com.z0736190100.cardcashian.controller.CashCardBatchProperties;
+import com.z0736190100.cardcashian.security.CredentialCacheProperties;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+
+/**
+ * Non-blocking variant of the CashCard API: WebFlux on Netty and R2DBC, no request ever pins a thread while it
+ * waits for the database.
+ */
+@SpringBootApplication
+@EnableConfigurationProperties({CredentialCacheProperties.class, CashCardBatchProperties.class})
+public class ReactiveCardcashianApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveCardcashianApplication.class, args);
+    }
+}
@@ -0,0 +1,73 @@
+package com.z0736190100.cardcashian.reactive.config;
+
+import com.z0736190100.cardcashian.security.CachingPasswordEncoder;
+import com.z0736190100.cardcashian.security.CredentialCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+/**
+ * Same users and rules as the servlet application's {@code SecurityConfig}.
+ */
+@Configuration
+public class ReactiveSecurityConfig {
+
+    public static final String ROLE_CARD_OWNER = "CARD-OWNER";
+    public static final String ROLE_NON_OWNER = "NON-OWNER";
+
+    @Bean
+    SecurityWebFilterChain filterChain(ServerHttpSecurity http) {
+        http
+                .authorizeExchange(exchange -> exchange
+                        .pathMatchers("/cashcards/**")
+                        .hasRole(ROLE_CARD_OWNER)
+                        .pathMatchers("/actuator/health", "/actuator/health/**")
+                        .permitAll()
+                        .pathMatchers("/actuator/**")
+                        .authenticated())
+                .httpBasic(Customizer.withDefaults())
+                // stateless like the servlet chain's HTTP Basic, no WebSession created per request
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .csrf(csrf -> csrf.disable());
+
+        return http.build();
+    }
+
+    @Bean
+    PasswordEncoder passwordEncoder(CredentialCacheProperties credentialCache, MeterRegistry meterRegistry) {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder();
+        // BCrypt runs on a bounded scheduler here, a cache hit does not leave the event loop at all
+        return credentialCache.enabled() ? new CachingPasswordEncoder(bcrypt, credentialCache, meterRegistry)
+                : bcrypt;
+    }
+
+    @Bean
+    MapReactiveUserDetailsService testOnlyUsers(PasswordEncoder passwordEncoder) {
+        User.UserBuilder users = User.builder();
+        UserDetails sarah = users
+                .username("sarah1")
+                .password(passwordEncoder.encode("abc123"))
+                .roles(ROLE_CARD_OWNER)
+                .build();
+        UserDetails hankOwnsNoCards = users
+                .username("hank-owns-no-cards")
+                .password(passwordEncoder.encode("qrs456"))
+                .roles(ROLE_NON_OWNER)
+                .build();
+        UserDetails kumar = users
+                .username("kumar2")
+                .password(passwordEncoder.encode("xyz789"))
+                .roles(ROLE_CARD_OWNER)
+                .build();
+        return new MapReactiveUserDetailsService(sarah, hankOwnsNoCards, kumar);
+    }
+}
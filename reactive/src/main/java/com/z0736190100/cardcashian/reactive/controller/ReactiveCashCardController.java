@@ -0,0 +1,267 @@
+package com.z0736190100.cardcashian.reactive.controller;
+
+import com.z0736190100.cardcashian.controller.CashCardBatchProperties;
+import com.z0736190100.cardcashian.controller.CashCardHeaders;
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.model.CashCardAdjustment;
+import com.z0736190100.cardcashian.model.CashCardBatchResult;
+import com.z0736190100.cardcashian.model.CashCardSummary;
+import com.z0736190100.cardcashian.reactive.repo.ReactiveCashCardRepository;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Same endpoints, status codes and ownership rules as {@code CashCardController}, without blocking: every handler
+ * returns as soon as its database call is issued.
+ */
+@RestController
+@RequestMapping("/cashcards")
+public class ReactiveCashCardController {
+
+    private final ReactiveCashCardRepository cashCardRepository;
+    private final CashCardBatchProperties batchProperties;
+
+    private ReactiveCashCardController(ReactiveCashCardRepository cashCardRepository,
+                                       CashCardBatchProperties batchProperties) {
+        this.cashCardRepository = cashCardRepository;
+        this.batchProperties = batchProperties;
+    }
+
+    @GetMapping("/{id}")
+    private Mono<ResponseEntity<CashCard>> findById(@PathVariable Long id, Principal principal,
+                                                    ServerWebExchange exchange) {
+
+        Mono<ResponseEntity<CashCard>> found = cashCardRepository.findByIdAndOwner(id, principal.getName())
+                .map(cashCard -> ResponseEntity.ok()
+                        .eTag(CashCardHeaders.eTagOf(cashCard.version()))
+                        .body(cashCard))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+
+        if (exchange.getRequest().getHeaders().getIfNoneMatch().isEmpty()) {
+            return found;
+        }
+        // revalidation only needs the version, not the row
+        return cashCardRepository.findVersionByIdAndOwner(id, principal.getName())
+                .flatMap(version -> exchange.checkNotModified(CashCardHeaders.eTagOf(version))
+                        ? Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).<CashCard>build())
+                        : found)
+                .switchIfEmpty(found);
+    }
+
+    @GetMapping()
+    private Mono<ResponseEntity<List<CashCard>>> findAll(Pageable pageable, Principal principal,
+                                                         @RequestParam(required = false) String after,
+                                                         ServerWebExchange exchange) {
+
+        if (after != null) {
+            return findAllAfter(after, pageable.getPageSize(), principal, exchange);
+        }
+        return cashCardRepository.findByOwner(principal.getName(), pageable)
+                .collectList()
+                .map(cashCards -> pageOf(cashCards, null, exchange));
+    }
+
+    // keyset ("cursor") mode: seeks on the (owner, id) index, deep pages cost the same as the first one
+    private Mono<ResponseEntity<List<CashCard>>> findAllAfter(String cursor, int size, Principal principal,
+                                                              ServerWebExchange exchange) {
+
+        long afterId;
+        try {
+            afterId = cursor.isEmpty() ? Long.MIN_VALUE : CashCardHeaders.decodeCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        // one extra row tells whether there is a next page
+        return cashCardRepository.findByOwnerAfter(principal.getName(), afterId, size + 1)
+                .collectList()
+                .map(cashCards -> {
+                    if (cashCards.size() <= size) {
+                        return pageOf(cashCards, null, exchange);
+                    }
+                    List<CashCard> page = cashCards.subList(0, size);
+                    return pageOf(page, CashCardHeaders.encodeCursor(page.get(size - 1).id()), exchange);
+                });
+    }
+
+    // the ETag is taken from the page just read: a revalidation costs the page's own query, but the page is only
+    // serialized and sent if it changed
+    private static ResponseEntity<List<CashCard>> pageOf(List<CashCard> cashCards, String nextCursor,
+                                                         ServerWebExchange exchange) {
+        if (exchange.checkNotModified(CashCardHeaders.eTagOfPage(cashCards, nextCursor))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+        if (nextCursor != null) {
+            ok.header(CashCardHeaders.NEXT_CURSOR, nextCursor);
+        }
+        return ok.body(cashCards);
+    }
+
+    @GetMapping("/summary")
+    private Mono<CashCardSummary> summarizeCashCards(Principal principal) {
+        return cashCardRepository.summarizeByOwner(principal.getName())
+                .defaultIfEmpty(CashCardSummary.EMPTY);
+    }
+
+    // rows are encoded one by one as they arrive, with backpressure from the client connection
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    private Flux<CashCard> exportCashCards(Principal principal) {
+        return cashCardRepository.findByOwnerOrderById(principal.getName());
+    }
+
+    @PostMapping
+    private Mono<ResponseEntity<Void>> createCashCard(@RequestBody CashCard newCashCardRequest,
+                                                      UriComponentsBuilder ucb, Principal principal) {
+
+        CashCard cashCardWithOwner = new CashCard(null, newCashCardRequest.amount(), principal.getName());
+
+        return cashCardRepository.save(cashCardWithOwner)
+                .map(savedCashCard -> ResponseEntity.created(locationOf(ucb, savedCashCard)).build());
+    }
+
+    @PutMapping("/{requestedId}")
+    private Mono<ResponseEntity<Void>> putCashCard(@PathVariable Long requestedId,
+                                                   @RequestBody CashCard cashCardUpdate,
+                                                   @RequestHeader(name = HttpHeaders.IF_MATCH, required = false)
+                                                   List<String> ifMatch,
+                                                   Principal principal) {
+
+        boolean conditional = ifMatch != null && !ifMatch.contains("*");
+
+        return cashCardRepository.findByIdAndOwner(requestedId, principal.getName())
+                .flatMap(cashCard -> {
+                    // any listed ETag may name the version read; none doing so is a stale If-Match
+                    if (conditional && !CashCardHeaders.matches(ifMatch, cashCard.version())) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).<Void>build());
+                    }
+                    // version-guarded UPDATE: 412 resp. 409 if a concurrent PUT won since the read
+                    return cashCardRepository.save(new CashCard(cashCard.id(), cashCardUpdate.amount(),
+                                    principal.getName(), cashCard.version()))
+                            .map(saved -> ResponseEntity.noContent()
+                                    .eTag(CashCardHeaders.eTagOf(saved.version()))
+                                    .<Void>build())
+                            .onErrorResume(OptimisticLockingFailureException.class, e -> Mono.just(ResponseEntity
+                                    .status(conditional ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT)
+                                    .build()));
+                })
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{id}/adjust")
+    private Mono<ResponseEntity<Void>> adjustCashCard(@PathVariable Long id,
+                                                      @RequestBody CashCardAdjustment adjustment,
+                                                      Principal principal) {
+
+        if (adjustment.delta() == null) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return cashCardRepository.adjustAmount(id, principal.getName(), adjustment.delta())
+                .map(adjusted -> adjusted
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.notFound().<Void>build());
+    }
+
+    @PostMapping("/batch")
+    private Mono<ResponseEntity<List<CashCardBatchResult>>> createCashCards(
+            @RequestBody List<CashCard> newCashCardRequests, UriComponentsBuilder ucb, Principal principal) {
+
+        if (newCashCardRequests.size() > batchProperties.maxItems()) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        List<CashCard> cashCardsWithOwner = newCashCardRequests.stream()
+                .map(request -> new CashCard(null, request.amount(), principal.getName()))
+                .toList();
+
+        // saveAll keeps the request order
+        return cashCardRepository.saveAll(cashCardsWithOwner)
+                .map(savedCashCard -> new CashCardBatchResult(savedCashCard.id(), HttpStatus.CREATED.value(),
+                        locationOf(ucb.cloneBuilder(), savedCashCard)))
+                .collectList()
+                .map(ResponseEntity::ok);
+    }
+
+    @PutMapping("/batch")
+    private Mono<ResponseEntity<List<CashCardBatchResult>>> putCashCards(@RequestBody List<CashCard> cashCardUpdates,
+                                                                         Principal principal) {
+
+        if (cashCardUpdates.size() > batchProperties.maxItems()) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        return Flux.fromIterable(batchProperties.chunksOf(cashCardUpdates))
+                .concatMap(chunk -> putChunk(chunk, principal.getName()))
+                .collectList()
+                .map(ResponseEntity::ok);
+    }
+
+    // one ownership check for the whole chunk instead of a findByIdAndOwner per card, then one batched UPDATE
+    private Flux<CashCardBatchResult> putChunk(List<CashCard> chunk, String owner) {
+        List<Long> requestedIds = chunk.stream()
+                .map(CashCard::id)
+                .filter(Objects::nonNull)
+                .toList();
+        Mono<Set<Long>> ownedIds = requestedIds.isEmpty()
+                ? Mono.just(Set.of())
+                : cashCardRepository.findIdsByOwnerAndIdIn(owner, requestedIds).collect(Collectors.toSet());
+
+        return ownedIds.flatMapMany(owned -> {
+            List<CashCard> updatedCashCards = chunk.stream()
+                    .filter(update -> owned.contains(update.id()))
+                    .map(update -> new CashCard(update.id(), update.amount(), owner))
+                    .toList();
+            return cashCardRepository.updateAmounts(updatedCashCards)
+                    .collectList()
+                    .flatMapIterable(updatedRows -> {
+                        List<CashCardBatchResult> results = new ArrayList<>(chunk.size());
+                        int updatedIndex = 0;
+                        for (CashCard update : chunk) {
+                            HttpStatus status;
+                            if (update.id() == null) {
+                                status = HttpStatus.BAD_REQUEST;
+                            } else if (owned.contains(update.id()) && updatedRows.get(updatedIndex++) > 0) {
+                                status = HttpStatus.NO_CONTENT;
+                            } else {
+                                status = HttpStatus.NOT_FOUND;
+                            }
+                            results.add(new CashCardBatchResult(update.id(), status.value(), null));
+                        }
+                        return results;
+                    });
+        });
+    }
+
+    @DeleteMapping("/{id}")
+    private Mono<ResponseEntity<Void>> deleteCashCard(@PathVariable Long id, Principal principal) {
+
+        return cashCardRepository.deleteByIdAndOwner(id, principal.getName())
+                .map(deleted -> deleted > 0
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.notFound().<Void>build());
+    }
+
+    private static URI locationOf(UriComponentsBuilder ucb, CashCard cashCard) {
+        return ucb
+                .path("cashcards/{id}")
+                .buildAndExpand(cashCard.id())
+                .toUri();
+    }
+}
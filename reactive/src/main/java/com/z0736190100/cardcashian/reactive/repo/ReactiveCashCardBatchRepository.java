@@ -0,0 +1,20 @@
+package com.z0736190100.cardcashian.reactive.repo;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * R2DBC counterpart of {@code CashCardBatchRepository#updateAmounts}: one statement for all cards, with a set of
+ * bindings per card, instead of one UPDATE call per card.
+ */
+public interface ReactiveCashCardBatchRepository {
+
+    /**
+     * Updates the amount of every card that belongs to the card's owner.
+     *
+     * @return the number of updated rows per card, in the same order
+     */
+    Flux<Long> updateAmounts(List<CashCard> cashCards);
+}
@@ -0,0 +1,41 @@
+package com.z0736190100.cardcashian.reactive.repo;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+class ReactiveCashCardBatchRepositoryImpl implements ReactiveCashCardBatchRepository {
+
+    private static final String UPDATE_AMOUNT =
+            "UPDATE CASH_CARD SET AMOUNT = $1, VERSION = VERSION + 1 WHERE ID = $2 AND OWNER = $3";
+
+    private final DatabaseClient databaseClient;
+
+    ReactiveCashCardBatchRepositoryImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Flux<Long> updateAmounts(List<CashCard> cashCards) {
+        if (cashCards.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(UPDATE_AMOUNT);
+            for (int i = 0; i < cashCards.size(); i++) {
+                if (i > 0) {
+                    // keeps the bindings so far as one set and starts the next
+                    statement.add();
+                }
+                CashCard cashCard = cashCards.get(i);
+                statement.bind(0, cashCard.amount()).bind(1, cashCard.id()).bind(2, cashCard.owner());
+            }
+            // one result per set of bindings, in order
+            return Flux.from(statement.execute()).concatMap(Result::getRowsUpdated);
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package com.z0736190100.cardcashian.reactive.repo;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.model.CashCardSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * R2DBC counterpart of {@code CashCardRepository}, same queries against the same schema.
+ */
+public interface ReactiveCashCardRepository extends ReactiveCrudRepository<CashCard, Long>,
+        ReactiveCashCardBatchRepository {
+
+    Mono<CashCard> findByIdAndOwner(Long id, String owner);
+
+    Flux<CashCard> findByOwner(String owner, Pageable pageable);
+
+    Flux<CashCard> findByOwnerOrderById(String owner);
+
+    @Query("SELECT * FROM CASH_CARD WHERE OWNER = :owner AND ID > :after ORDER BY ID LIMIT :limit")
+    Flux<CashCard> findByOwnerAfter(String owner, long after, int limit);
+
+    @Modifying
+    @Query("UPDATE CASH_CARD SET AMOUNT = AMOUNT + :delta, VERSION = VERSION + 1 WHERE ID = :id AND OWNER = :owner")
+    Mono<Boolean> adjustAmount(Long id, String owner, long delta);
+
+    @Modifying
+    @Query("DELETE FROM CASH_CARD WHERE ID = :id AND OWNER = :owner")
+    Mono<Long> deleteByIdAndOwner(Long id, String owner);
+
+    @Query("SELECT VERSION FROM CASH_CARD WHERE ID = :id AND OWNER = :owner")
+    Mono<Long> findVersionByIdAndOwner(Long id, String owner);
+
+    @Query("""
+            SELECT COUNT(*) AS CARD_COUNT, COALESCE(SUM(AMOUNT), 0) AS TOTAL,
+                   MIN(AMOUNT) AS MIN_AMOUNT, MAX(AMOUNT) AS MAX_AMOUNT
+            FROM CASH_CARD WHERE OWNER = :owner""")
+    Mono<CashCardSummary> summarizeByOwner(String owner);
+
+    @Query("SELECT ID FROM CASH_CARD WHERE OWNER = :owner AND ID IN (:ids)")
+    Flux<Long> findIdsByOwnerAndIdIn(String owner, Collection<Long> ids);
+}
@@ -0,0 +1,359 @@
+package com.z0736190100.cardcashian.reactive;
+
+import com.jayway.jsonpath.JsonPath;
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.model.CashCardAdjustment;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The scenarios of {@code CardcashianApplicationTests} against the WebFlux + R2DBC variant.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ReactiveCardcashianApplicationTests {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    private WebTestClient asSarah() {
+        return webTestClient.mutate()
+                .defaultHeaders(headers -> headers.setBasicAuth("sarah1", "abc123"))
+                .build();
+    }
+
+    @Test
+    void shouldReturnCorrectExistingCashCard() {
+        asSarah().get().uri("/cashcards/99")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(99)
+                .jsonPath("$.amount").isEqualTo(123.45);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldCreateANewCashCard() {
+        URI location = asSarah().post().uri("/cashcards")
+                .bodyValue(new CashCard(null, 25000, "sarah1"))
+                .exchange()
+                .expectStatus().isCreated()
+                .returnResult(Void.class)
+                .getResponseHeaders().getLocation();
+        assertThat(location).isNotNull();
+
+        asSarah().get().uri(location)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.amount").isEqualTo(250.00)
+                .jsonPath("$.owner").isEqualTo("sarah1");
+    }
+
+    @Test
+    void shouldNotReturnACashCardWithAnUnknownId() {
+        asSarah().get().uri("/cashcards/1000")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void shouldReturnASortedPageOfCashCards() {
+        asSarah().get().uri("/cashcards?page=0&size=1&sort=amount,asc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].amount").isEqualTo(1.00);
+    }
+
+    @Test
+    void shouldNotReturnACashCardWhenUsingBadCredentials() {
+        webTestClient.get().uri("/cashcards/99")
+                .headers(headers -> headers.setBasicAuth("BAD-USER", "abc123"))
+                .exchange()
+                .expectStatus().isUnauthorized();
+        webTestClient.get().uri("/cashcards/99")
+                .headers(headers -> headers.setBasicAuth("sarah1", "BAD-PASSWORD"))
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void shouldOnlyExposeHealthToAnonymousClients() {
+        webTestClient.get().uri("/actuator/health")
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.get().uri("/actuator/metrics")
+                .exchange()
+                .expectStatus().isUnauthorized();
+        asSarah().get().uri("/actuator/metrics")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void shouldRejectUsersWhoAreNotCardOwners() {
+        webTestClient.get().uri("/cashcards/99")
+                .headers(headers -> headers.setBasicAuth("hank-owns-no-cards", "qrs456"))
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void shouldNotAllowAccessToCashCardsTheyDoNotOwn() {
+        asSarah().get().uri("/cashcards/102")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldUpdateAnExistingCashCard() {
+        asSarah().put().uri("/cashcards/99")
+                .bodyValue(new CashCard(null, 1999, null))
+                .exchange()
+                .expectStatus().isNoContent();
+
+        asSarah().get().uri("/cashcards/99")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(99)
+                .jsonPath("$.amount").isEqualTo(19.99);
+    }
+
+    @Test
+    void shouldNotUpdateACashCardThatDoesNotExistOrIsOwnedBySomeoneElse() {
+        asSarah().put().uri("/cashcards/99999")
+                .bodyValue(new CashCard(null, 1999, null))
+                .exchange()
+                .expectStatus().isNotFound();
+        asSarah().put().uri("/cashcards/102")
+                .bodyValue(new CashCard(null, 33333, null))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldDeleteAnExistingCashCard() {
+        asSarah().delete().uri("/cashcards/99")
+                .exchange()
+                .expectStatus().isNoContent();
+
+        asSarah().get().uri("/cashcards/99")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void shouldNotAllowDeletionOfCashCardsTheyDoNotOwn() {
+        asSarah().delete().uri("/cashcards/102")
+                .exchange()
+                .expectStatus().isNotFound();
+        asSarah().delete().uri("/cashcards/99999")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        webTestClient.get().uri("/cashcards/102")
+                .headers(headers -> headers.setBasicAuth("kumar2", "xyz789"))
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void shouldRejectANewCashCardWithoutAnAmount() {
+        asSarah().post().uri("/cashcards")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{}")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldCreateAndUpdateCashCardsInBatch() {
+        String created = asSarah().post().uri("/cashcards/batch")
+                .bodyValue(List.of(new CashCard(null, 25000, null), new CashCard(null, 1750, null)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        List<Integer> createdStatuses = JsonPath.parse(created).read("$[*].status");
+        assertThat(createdStatuses).containsExactly(201, 201);
+
+        String updated = asSarah().put().uri("/cashcards/batch")
+                .bodyValue(List.of(new CashCard(99L, 1999, null), new CashCard(102L, 33333, null),
+                        new CashCard(99999L, 100, null), new CashCard(100L, 2500, null),
+                        new CashCard(null, 100, null)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        List<Integer> updatedStatuses = JsonPath.parse(updated).read("$[*].status");
+        assertThat(updatedStatuses).containsExactly(204, 404, 404, 204, 400);
+
+        asSarah().get().uri(URI.create(JsonPath.parse(created).read("$[1].location")))
+                .exchange()
+                .expectBody()
+                .jsonPath("$.amount").isEqualTo(17.50);
+        asSarah().get().uri("/cashcards/99")
+                .exchange()
+                .expectBody()
+                .jsonPath("$.amount").isEqualTo(19.99);
+        asSarah().get().uri("/cashcards/100")
+                .exchange()
+                .expectBody()
+                .jsonPath("$.amount").isEqualTo(25.00);
+    }
+
+    @Test
+    void shouldWalkAllCashCardsWithCursor() {
+        EntityExchangeResult<String> firstPage = asSarah().get().uri("/cashcards?after=&size=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult();
+        List<Integer> firstIds = JsonPath.parse(firstPage.getResponseBody()).read("$..id");
+        assertThat(firstIds).containsExactly(99, 100);
+        String nextCursor = firstPage.getResponseHeaders().getFirst("Next-Cursor");
+        assertThat(nextCursor).isNotBlank();
+
+        String lastPage = asSarah().get().uri("/cashcards?after=" + nextCursor + "&size=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist("Next-Cursor")
+                .expectBody(String.class).returnResult().getResponseBody();
+        List<Integer> lastIds = JsonPath.parse(lastPage).read("$..id");
+        assertThat(lastIds).containsExactly(101);
+
+        asSarah().get().uri("/cashcards?after=not-a-cursor")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void shouldExportAllOwnedCashCardsAsNdjson() {
+        String body = asSarah().get().uri("/cashcards/export")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(3);
+        Number firstId = JsonPath.parse(lines[0]).read("$.id");
+        assertThat(firstId).isEqualTo(99);
+        assertThat(body).doesNotContain("kumar2");
+    }
+
+    @Test
+    void shouldSummarizeOwnedCashCards() {
+        asSarah().get().uri("/cashcards/summary")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.cardCount").isEqualTo(3)
+                .jsonPath("$.total").isEqualTo(274.45)
+                .jsonPath("$.minAmount").isEqualTo(1.00)
+                .jsonPath("$.maxAmount").isEqualTo(150.00);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldAdjustOnlyOwnedCashCards() {
+        asSarah().post().uri("/cashcards/99/adjust")
+                .bodyValue(new CashCardAdjustment(-2345L))
+                .exchange()
+                .expectStatus().isNoContent();
+        asSarah().post().uri("/cashcards/102/adjust")
+                .bodyValue(new CashCardAdjustment(100L))
+                .exchange()
+                .expectStatus().isNotFound();
+
+        asSarah().get().uri("/cashcards/99")
+                .exchange()
+                .expectBody()
+                .jsonPath("$.amount").isEqualTo(100.00);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldAnswerUnchangedCashCardsWithNotModified() {
+        String eTag = asSarah().get().uri("/cashcards/99")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+        String listETag = asSarah().get().uri("/cashcards?page=0&size=2&sort=id")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+
+        asSarah().get().uri("/cashcards/99")
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isNotModified();
+        asSarah().get().uri("/cashcards?page=0&size=2&sort=id")
+                .ifNoneMatch(listETag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        // card 101 is not on the page, 100 is
+        asSarah().post().uri("/cashcards/101/adjust")
+                .bodyValue(new CashCardAdjustment(1L))
+                .exchange()
+                .expectStatus().isNoContent();
+        asSarah().get().uri("/cashcards?page=0&size=2&sort=id")
+                .ifNoneMatch(listETag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        asSarah().post().uri("/cashcards/100/adjust")
+                .bodyValue(new CashCardAdjustment(1L))
+                .exchange()
+                .expectStatus().isNoContent();
+        asSarah().get().uri("/cashcards?page=0&size=2&sort=id")
+                .ifNoneMatch(listETag)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldUpdateACashCardOnlyIfItStillMatches() {
+        String eTag = asSarah().get().uri("/cashcards/99")
+                .exchange()
+                .returnResult(String.class).getResponseHeaders().getETag();
+
+        EntityExchangeResult<Void> updated = asSarah().put().uri("/cashcards/99")
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .bodyValue(new CashCard(null, 1999, null))
+                .exchange()
+                .expectStatus().isNoContent()
+                .expectBody(Void.class).returnResult();
+        assertThat(updated.getResponseHeaders().getETag()).isNotNull().isNotEqualTo(eTag);
+
+        asSarah().put().uri("/cashcards/99")
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .bodyValue(new CashCard(null, 2999, null))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        // any listed ETag may be the current one
+        asSarah().put().uri("/cashcards/99")
+                .header(HttpHeaders.IF_MATCH, eTag + ", " + updated.getResponseHeaders().getETag())
+                .bodyValue(new CashCard(null, 2999, null))
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+}
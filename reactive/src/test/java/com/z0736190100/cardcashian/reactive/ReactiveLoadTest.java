@@ -0,0 +1,37 @@
+package com.z0736190100.cardcashian.reactive;
+
+import com.z0736190100.cardcashian.LoadGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Same load as the servlet application's {@code VirtualThreadsLoadTest}, so that the two reports can be compared
+ * line by line: {@code ./gradlew loadTest :reactive:loadTest}.
+ */
+@Tag("load")
+class ReactiveLoadTest {
+
+    private static final int REQUESTS = 10_000;
+    private static final int CONCURRENCY = 1_000;
+
+    @Test
+    void shouldReportP99AndFootprintOfTheReactiveStack() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ReactiveCardcashianApplication.class)
+                .run("--server.port=0", "--logging.level.root=WARN")) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            LoadGenerator load = new LoadGenerator("sarah1", "abc123");
+
+            // warm up JIT, connection pool and credentials cache
+            load.run(REQUESTS / 10, CONCURRENCY / 10, i -> LoadGenerator.get(baseUrl + "/cashcards?page=0&size=20"));
+            LoadGenerator.Result reactive = load.run(REQUESTS, CONCURRENCY,
+                    i -> LoadGenerator.get(baseUrl + "/cashcards?page=0&size=20"));
+
+            System.out.println("reactive (WebFlux + R2DBC): " + reactive);
+            assertThat(reactive.failures()).isZero();
+        }
+    }
+}
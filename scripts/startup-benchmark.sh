@@ -0,0 +1,57 @@
+#!/usr/bin/env bash
+# Startup time and resident memory (RSS) of the JVM, AOT, CDS and native builds of the application.
+# Linux only (reads /proc). Build what should be compared first, missing builds are skipped:
+#   ./gradlew bootJar cdsArchive        (add -PcdsAot=true to train the archive for AOT mode)
+#   ./gradlew nativeCompile             (needs a GraalVM JDK)
+# then run from the project directory:
+#   scripts/startup-benchmark.sh [runs per variant, default 5]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=${1:-5}
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+BOOT_JAR=$(ls build/libs/cardcashian-*.jar 2>/dev/null | grep -vE -- '-(plain|jmh)\.jar$' | head -n 1 || true)
+CDS_JAR=build/cds/$(basename "${BOOT_JAR:-none}")
+CDS_ARCHIVE=build/cds/cardcashian.jsa
+NATIVE=build/native/nativeCompile/cardcashian
+
+# startup: Spring Boot's own "process running for" (JVM or process start until the context is refreshed
+# and the web server listens); RSS: right after that, before any request
+measure() {
+    local name=$1
+    shift
+    local log pid total_seconds=0 total_rss=0
+    for _ in $(seq "$RUNS"); do
+        log=$(mktemp)
+        "$@" --server.port=0 --spring.main.banner-mode=off > "$log" 2>&1 &
+        pid=$!
+        until grep -q 'Started CardcashianApplication' "$log"; do
+            if ! kill -0 "$pid" 2>/dev/null; then
+                echo "$name did not start, see $log" >&2
+                return 1
+            fi
+            sleep 0.02
+        done
+        total_rss=$((total_rss + $(awk '/^VmRSS/ { print $2 }' "/proc/$pid/status")))
+        total_seconds=$(awk -v total="$total_seconds" -v run="$(sed -n 's/.*process running for \([0-9.]*\)).*/\1/p' "$log")" \
+            'BEGIN { print total + run }')
+        kill "$pid"
+        wait "$pid" 2>/dev/null || true
+        rm -f "$log"
+    done
+    awk -v name="$name" -v seconds="$total_seconds" -v rss="$total_rss" -v runs="$RUNS" \
+        'BEGIN { printf "%-10s %10.3f s %10.0f MiB\n", name, seconds / runs, rss / runs / 1024 }'
+}
+
+printf "%-10s %12s %14s   (mean of %d runs)\n" variant startup RSS "$RUNS"
+if [[ -n "$BOOT_JAR" ]]; then
+    measure jvm "$JAVA" -jar "$BOOT_JAR"
+    measure jvm+aot "$JAVA" -Dspring.aot.enabled=true -jar "$BOOT_JAR"
+fi
+if [[ -f "$CDS_ARCHIVE" && -f "$CDS_JAR" ]]; then
+    measure cds "$JAVA" -XX:SharedArchiveFile="$CDS_ARCHIVE" -jar "$CDS_JAR"
+    measure cds+aot "$JAVA" -XX:SharedArchiveFile="$CDS_ARCHIVE" -Dspring.aot.enabled=true -jar "$CDS_JAR"
+fi
+if [[ -x "$NATIVE" ]]; then
+    measure native "$NATIVE"
+fi
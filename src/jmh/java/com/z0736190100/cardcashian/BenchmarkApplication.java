@@ -0,0 +1,48 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.repo.CashCardRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Starts the whole application for benchmarks: own in-memory database, random port, quiet logging.
+ */
+public final class BenchmarkApplication {
+
+    public static final String OWNER = "sarah1";
+    public static final String PASSWORD = "abc123";
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        // passed as command line arguments: builder "properties" are only defaults, application.yaml would win
+        String[] args = Stream.concat(Stream.of("server.port=0", "logging.level.root=WARN"), Stream.of(properties))
+                .map(property -> "--" + property)
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(CardcashianApplication.class)
+                .run(args);
+    }
+
+    /**
+     * Inserts {@code count} cards for the owner and returns them with their ids.
+     */
+    public static List<CashCard> seed(ConfigurableApplicationContext context, String owner, int count) {
+        CashCardRepository repository = context.getBean(CashCardRepository.class);
+        List<CashCard> saved = new ArrayList<>(count);
+        List<CashCard> chunk = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            chunk.add(new CashCard(null, 100L + i, owner));
+            if (chunk.size() == 1000 || i == count - 1) {
+                saved.addAll(repository.insertAll(chunk));
+                chunk.clear();
+            }
+        }
+        return saved;
+    }
+}
@@ -0,0 +1,95 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.repo.CashCardRepository;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent writers on a few ({@code hotCards}) cards: a version-guarded read-modify-write as done by PUT, retried
+ * on conflict like a client receiving 412 would, against the single in-place UPDATE of the adjust endpoint.
+ * {@code conflicts} counts the lost optimistic attempts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class CashCardContentionBenchmark {
+
+    private static final String OWNER = BenchmarkApplication.OWNER;
+
+    @Param({"1", "16", "1024"})
+    public int hotCards;
+
+    private ConfigurableApplicationContext context;
+    private CashCardRepository repository;
+    private List<CashCard> cashCards;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Conflicts {
+
+        public long conflicts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            conflicts = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        repository = context.getBean(CashCardRepository.class);
+        cashCards = BenchmarkApplication.seed(context, OWNER, hotCards);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public CashCard optimisticUpdate(Conflicts counters) {
+        Long id = randomCard().id();
+        while (true) {
+            CashCard current = repository.findByIdAndOwner(id, OWNER);
+            try {
+                return repository.save(new CashCard(id, current.amount() + 1, OWNER, current.version()));
+            } catch (OptimisticLockingFailureException e) {
+                counters.conflicts++;
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean inPlaceAdjustment() {
+        return repository.adjustAmount(randomCard().id(), OWNER, 1);
+    }
+
+    private CashCard randomCard() {
+        return cashCards.get(ThreadLocalRandom.current().nextInt(cashCards.size()));
+    }
+}
@@ -0,0 +1,80 @@
+package com.z0736190100.cardcashian;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.z0736190100.cardcashian.model.CashCard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of the {@link CashCard} shapes checked by {@code CardcashianJsonTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CashCardJsonBenchmark {
+
+    private ObjectWriter singleWriter;
+    private ObjectWriter listWriter;
+    private ObjectReader singleReader;
+    private ObjectReader listReader;
+
+    private CashCard cashCard;
+    private CashCard[] cashCards;
+    private String cashCardJson;
+    private String cashCardsJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        // same defaults as the ObjectMapper Spring Boot configures for the application
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        singleWriter = objectMapper.writerFor(CashCard.class);
+        listWriter = objectMapper.writerFor(CashCard[].class);
+        singleReader = objectMapper.readerFor(CashCard.class);
+        listReader = objectMapper.readerFor(CashCard[].class);
+
+        cashCard = new CashCard(99L, 12345, "sarah1");
+        cashCards = new CashCard[]{
+                new CashCard(99L, 12345, "sarah1"),
+                new CashCard(100L, 100, "sarah1"),
+                new CashCard(101L, 15000, "sarah1")};
+        cashCardJson = singleWriter.writeValueAsString(cashCard);
+        cashCardsJson = listWriter.writeValueAsString(cashCards);
+    }
+
+    @Benchmark
+    public byte[] serializeSingle() throws IOException {
+        return singleWriter.writeValueAsBytes(cashCard);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws IOException {
+        return listWriter.writeValueAsBytes(cashCards);
+    }
+
+    @Benchmark
+    public CashCard deserializeSingle() throws IOException {
+        return singleReader.readValue(cashCardJson);
+    }
+
+    @Benchmark
+    public CashCard[] deserializeList() throws IOException {
+        return listReader.readValue(cashCardsJson);
+    }
+}
@@ -0,0 +1,58 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.security.RateLimitProperties;
+import com.z0736190100.cardcashian.security.TokenBucketRateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token taking of the per-user rate limiter from 8 threads, all on the same user ({@code owners=1}, every
+ * thread contends for one bucket) up to many users. The limit is high enough that every request is allowed, so
+ * this is the cost the limiter adds to each request; {@code CashCardRequestBenchmark} has the full request path
+ * with the filter on and off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class CashCardRateLimitBenchmark {
+
+    private static final RateLimitProperties.Limit UNREACHABLE = new RateLimitProperties.Limit(1e9, 1_000_000_000);
+
+    @Param({"1", "64", "100000"})
+    public int owners;
+
+    private TokenBucketRateLimiter rateLimiter;
+    private String[] names;
+
+    @Setup
+    public void setUp() {
+        rateLimiter = new TokenBucketRateLimiter(owners, Duration.ofMinutes(10));
+        names = new String[owners];
+        for (int i = 0; i < owners; i++) {
+            names[i] = "owner-" + i;
+        }
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return rateLimiter.tryAcquire(names[ThreadLocalRandom.current().nextInt(owners)], UNREACHABLE);
+    }
+}
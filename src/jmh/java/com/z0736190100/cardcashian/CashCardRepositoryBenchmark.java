@@ -0,0 +1,94 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.repo.CashCardRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every {@link CashCardRepository} query against the in-memory H2 database, no web layer involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CashCardRepositoryBenchmark {
+
+    private static final String OWNER = BenchmarkApplication.OWNER;
+
+    @Param({"10000"})
+    public int cardsPerOwner;
+
+    private ConfigurableApplicationContext context;
+    private CashCardRepository repository;
+    private List<CashCard> cashCards;
+    private List<Long> someIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        repository = context.getBean(CashCardRepository.class);
+        cashCards = BenchmarkApplication.seed(context, OWNER, cardsPerOwner);
+        BenchmarkApplication.seed(context, "kumar2", cardsPerOwner);
+        someIds = cashCards.stream().limit(100).map(CashCard::id).toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public CashCard findByIdAndOwner() {
+        return repository.findByIdAndOwner(randomCard().id(), OWNER);
+    }
+
+    @Benchmark
+    public Long findVersionByIdAndOwner() {
+        return repository.findVersionByIdAndOwner(randomCard().id(), OWNER);
+    }
+
+    @Benchmark
+    public Page<CashCard> findByOwnerFirstPage() {
+        return repository.findByOwner(OWNER, PageRequest.of(0, 20));
+    }
+
+    @Benchmark
+    public Page<CashCard> findByOwnerLastPage() {
+        return repository.findByOwner(OWNER, PageRequest.of(cardsPerOwner / 20 - 1, 20));
+    }
+
+    @Benchmark
+    public List<CashCard> findByOwnerAfterLastPage() {
+        return repository.findByOwnerAfter(OWNER, cashCards.get(cardsPerOwner - 21).id(), 20);
+    }
+
+    @Benchmark
+    public List<Long> findIdsByOwnerAndIdIn() {
+        return repository.findIdsByOwnerAndIdIn(OWNER, someIds);
+    }
+
+    private CashCard randomCard() {
+        return cashCards.get(ThreadLocalRandom.current().nextInt(cashCards.size()));
+    }
+}
@@ -0,0 +1,95 @@
+package com.z0736190100.cardcashian;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import jakarta.servlet.Filter;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Full request path: {@code SecurityConfig}'s filter chain (HTTP Basic, BCrypt) into {@code CashCardController},
+ * in requests per second, with and without the verified-credentials cache and the per-user rate limit (set high
+ * enough to never reject).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class CashCardRequestBenchmark {
+
+    @Param({"true", "false"})
+    public boolean credentialCache;
+
+    @Param({"true", "false"})
+    public boolean rateLimit;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private String authorization;
+    private String cardUri;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkApplication.start(
+                "cardcashian.security.credential-cache.enabled=" + credentialCache,
+                "cardcashian.security.rate-limit.enabled=" + rateLimit,
+                "cardcashian.security.rate-limit.roles[CARD-OWNER].permits-per-second=1e9",
+                "cardcashian.security.rate-limit.roles[CARD-OWNER].burst=1000000000");
+        // the plain filter chain, spring-security-test's springSecurity() would carry the authentication
+        // over to the next request and skip the password check
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .addFilters(context.getBean("springSecurityFilterChain", Filter.class))
+                .build();
+        Long id = BenchmarkApplication.seed(context, BenchmarkApplication.OWNER, 100).get(0).id();
+        cardUri = "/cashcards/" + id;
+        authorization = "Basic " + Base64.getEncoder().encodeToString(
+                (BenchmarkApplication.OWNER + ":" + BenchmarkApplication.PASSWORD).getBytes(StandardCharsets.UTF_8));
+
+        // don't measure error responses
+        int status = getCashCard().getResponse().getStatus();
+        if (status != 200) {
+            throw new IllegalStateException("GET " + cardUri + " answered " + status);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult getCashCard() throws Exception {
+        return mockMvc.perform(get(cardUri).header(HttpHeaders.AUTHORIZATION, authorization)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getPageOfCashCards() throws Exception {
+        return mockMvc.perform(get("/cashcards?page=0&size=20").header(HttpHeaders.AUTHORIZATION, authorization))
+                .andReturn();
+    }
+}
@@ -0,0 +1,98 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.repo.CashCardRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owner-scoped queries for one owner with a fixed number of cards while the table around it grows. Thanks to the
+ * {@code (OWNER, ID)} index the timings should stay flat across {@code tableRows}. The database lives in a file
+ * under {@code build/} so that tens of millions of rows do not need a huge heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CashCardTableSizeBenchmark {
+
+    private static final String OWNER = BenchmarkApplication.OWNER;
+    private static final int CARDS_PER_OWNER = 1000;
+    private static final int OTHER_OWNERS = 10_000;
+
+    @Param({"100000", "1000000", "10000000"})
+    public int tableRows;
+
+    private ConfigurableApplicationContext context;
+    private CashCardRepository repository;
+    private List<CashCard> cashCards;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(
+                "spring.datasource.url=jdbc:h2:file:./build/jmh-db/table-size-${random.uuid}",
+                "spring.sql.init.mode=always");
+        repository = context.getBean(CashCardRepository.class);
+        // half of the rows before and half after the measured owner's, so its cards are not at either end
+        fill(tableRows / 2);
+        cashCards = BenchmarkApplication.seed(context, OWNER, CARDS_PER_OWNER);
+        fill(tableRows - tableRows / 2 - CARDS_PER_OWNER);
+    }
+
+    private void fill(int rows) {
+        context.getBean(JdbcTemplate.class).update("""
+                INSERT INTO CASH_CARD (AMOUNT, OWNER)
+                SELECT X, CONCAT('owner-', MOD(X, ?)) FROM SYSTEM_RANGE(1, ?)""", OTHER_OWNERS, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.getBean(JdbcTemplate.class).execute("DROP ALL OBJECTS DELETE FILES");
+        context.close();
+    }
+
+    @Benchmark
+    public CashCard findByIdAndOwner() {
+        return repository.findByIdAndOwner(randomCard().id(), OWNER);
+    }
+
+    @Benchmark
+    public Long findVersionByIdAndOwner() {
+        return repository.findVersionByIdAndOwner(randomCard().id(), OWNER);
+    }
+
+    @Benchmark
+    public Page<CashCard> findByOwnerFirstPage() {
+        return repository.findByOwner(OWNER, PageRequest.of(0, 20));
+    }
+
+    @Benchmark
+    public List<CashCard> findByOwnerAfter() {
+        return repository.findByOwnerAfter(OWNER, randomCard().id(), 20);
+    }
+
+    private CashCard randomCard() {
+        return cashCards.get(ThreadLocalRandom.current().nextInt(cashCards.size()));
+    }
+}
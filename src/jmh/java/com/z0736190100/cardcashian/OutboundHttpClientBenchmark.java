@@ -0,0 +1,182 @@
+package com.z0736190100.cardcashian;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound calls per second from 8 threads against a local stub service:
+ * <ul>
+ *     <li>{@code simple}: the former bean, a bare {@code new RestTemplate()} (HttpURLConnection, whose JDK keep-alive
+ *     cache holds at most 5 idle connections per target)</li>
+ *     <li>{@code pooled}: the application's pooled Apache HttpClient, called by its address</li>
+ *     <li>{@code balanced}: the application's {@code RestTemplate} bean, the same client behind Spring Cloud
+ *     LoadBalancer, resolving {@code http://card-stub} from the (cached) discovery instances</li>
+ * </ul>
+ * Socket churn, the connections the stub accepted during an iteration (and per 1000 calls), is printed after
+ * every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class OutboundHttpClientBenchmark {
+
+    @Param({"simple", "pooled", "balanced"})
+    public String client;
+
+    private StubServer stub;
+    private ConfigurableApplicationContext context;
+    private RestTemplate restTemplate;
+    private String uri;
+
+    @Setup
+    public void setUp() throws IOException {
+        stub = new StubServer();
+        String stubUri = "http://localhost:" + stub.port();
+        if (client.equals("simple")) {
+            restTemplate = new RestTemplate();
+            uri = stubUri + "/cashcards/99";
+        } else {
+            context = BenchmarkApplication.start(
+                    "spring.cloud.discovery.client.simple.instances.card-stub[0].uri=" + stubUri);
+            if (client.equals("pooled")) {
+                restTemplate = new RestTemplate(
+                        new HttpComponentsClientHttpRequestFactory(context.getBean(CloseableHttpClient.class)));
+                uri = stubUri + "/cashcards/99";
+            } else {
+                restTemplate = context.getBean(RestTemplate.class);
+                uri = "http://card-stub/cashcards/99";
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportChurn() {
+        long calls = stub.responses.getAndSet(0);
+        long connections = stub.accepted.getAndSet(0);
+        System.out.printf("%n%s: %d connections for %d calls (%.2f per 1000 calls)%n",
+                client, connections, calls, calls == 0 ? 0.0 : connections * 1000.0 / calls);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (context != null) {
+            context.close();
+        }
+        stub.close();
+    }
+
+    @Benchmark
+    public String call() {
+        return restTemplate.getForObject(uri, String.class);
+    }
+
+    /**
+     * Answers every request on a kept-alive connection with the same small JSON card, in one write and without
+     * Nagle's algorithm, so the measured time is the client's. Counts accepted connections and responses.
+     */
+    private static final class StubServer {
+
+        private static final String BODY = "{\"id\":99,\"amount\":123.45,\"owner\":\"sarah1\"}";
+        private static final byte[] RESPONSE = ("HTTP/1.1 200 OK\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: " + BODY.length() + "\r\n"
+                + "\r\n"
+                + BODY).getBytes(StandardCharsets.US_ASCII);
+
+        final AtomicLong accepted = new AtomicLong();
+        final AtomicLong responses = new AtomicLong();
+        private final ServerSocket serverSocket;
+        private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        StubServer() throws IOException {
+            serverSocket = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+            executor.execute(this::accept);
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+            executor.shutdownNow();
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    accepted.incrementAndGet();
+                    executor.execute(() -> serve(socket));
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try (socket) {
+                socket.setTcpNoDelay(true);
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                while (skipRequest(in)) {
+                    out.write(RESPONSE);
+                    out.flush();
+                    responses.incrementAndGet();
+                }
+            } catch (IOException e) {
+                // client went away
+            }
+        }
+
+        // GET requests only: no body, a request ends with the empty line after its headers
+        private static boolean skipRequest(InputStream in) throws IOException {
+            int matched = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                matched = b == (matched % 2 == 0 ? '\r' : '\n') ? matched + 1 : b == '\r' ? 1 : 0;
+                if (matched == 4) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
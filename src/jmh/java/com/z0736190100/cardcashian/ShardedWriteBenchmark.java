@@ -0,0 +1,88 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.repo.CashCardRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent creates and in-place adjustments of many owners' cards with {@code cash_card} sharded over
+ * {@code shards} in-memory H2 databases, each with its own pool: how write throughput grows when the writes of
+ * different owners no longer share one database's commit path and pool. On one machine the shards still share its
+ * CPUs, so this shows the contention removed, not the capacity added by separate database servers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ShardedWriteBenchmark {
+
+    private static final int OWNERS = 1000;
+
+    @Param({"1", "2", "4"})
+    public int shards;
+
+    private ConfigurableApplicationContext context;
+    private CashCardRepository repository;
+    private List<CashCard> cashCards;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> properties = new ArrayList<>(List.of("cardcashian.sharding.enabled=true"));
+        String run = UUID.randomUUID().toString();
+        for (int shard = 0; shard < shards; shard++) {
+            properties.add("cardcashian.sharding.shards[" + shard + "].url=jdbc:h2:mem:bench-shard-" + shard + "-"
+                    + run + ";DB_CLOSE_DELAY=-1");
+            properties.add("cardcashian.sharding.shards[" + shard + "].username=sa");
+        }
+        context = BenchmarkApplication.start(properties.toArray(String[]::new));
+        repository = context.getBean(CashCardRepository.class);
+        List<CashCard> newCashCards = new ArrayList<>(OWNERS);
+        for (int owner = 0; owner < OWNERS; owner++) {
+            newCashCards.add(new CashCard(null, 100, owner(owner)));
+        }
+        cashCards = repository.insertAll(newCashCards);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public CashCard create() {
+        return repository.save(new CashCard(null, 100, owner(ThreadLocalRandom.current().nextInt(OWNERS))));
+    }
+
+    @Benchmark
+    public boolean adjust() {
+        CashCard cashCard = cashCards.get(ThreadLocalRandom.current().nextInt(cashCards.size()));
+        return repository.adjustAmount(cashCard.id(), cashCard.owner(), 1);
+    }
+
+    private static String owner(int owner) {
+        return "owner-" + owner;
+    }
+}
@@ -0,0 +1,38 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.model.CashCardAdjustment;
+import com.z0736190100.cardcashian.model.CashCardBatchResult;
+import com.z0736190100.cardcashian.model.CashCardChange;
+import com.z0736190100.cardcashian.model.CashCardSummary;
+import com.z0736190100.cardcashian.repo.OwnerTotalTrigger;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+/**
+ * What a native image needs beyond what Spring's AOT processing infers from the bean definitions:
+ * <ul>
+ *     <li>the JSON model, including the amount (de)serializers Jackson instantiates from annotations, for every
+ *     format and also where it is not a controller method's parameter or return type (streamed exports, change
+ *     events, tests)</li>
+ *     <li>{@link OwnerTotalTrigger}, which H2 instantiates by class name from {@code CREATE TRIGGER}</li>
+ *     <li>{@code schema.sql}, read from the classpath at startup</li>
+ * </ul>
+ * {@code SecurityConfig} needs nothing here: its beans become generated code and the properties records it
+ * binds are registered by the AOT processing of {@code @ConfigurationProperties}.
+ */
+class CardcashianRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                CashCard.class, CashCardAdjustment.class, CashCardBatchResult.class, CashCardChange.class,
+                CashCardSummary.class);
+        hints.reflection().registerType(TypeReference.of(OwnerTotalTrigger.class),
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        hints.resources().registerPattern("schema.sql");
+    }
+}
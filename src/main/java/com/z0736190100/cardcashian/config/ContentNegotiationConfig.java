@@ -0,0 +1,32 @@
+package com.z0736190100.cardcashian.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Binary alternatives to JSON for clients that ask for them with {@code Accept: application/cbor} or
+ * {@code application/x-jackson-smile}, same model and annotations as JSON.
+ * <p>
+ * The beans replace Spring MVC's default CBOR and Smile converters in place, so JSON stays the first converter and
+ * remains the answer to a wildcard or missing {@code Accept} header. Unlike the defaults they are built
+ * from Spring Boot's {@link Jackson2ObjectMapperBuilder}, i.e. with the same modules and {@code spring.jackson.*}
+ * settings as JSON.
+ */
+@Configuration
+public class ContentNegotiationConfig {
+
+    @Bean
+    MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
@@ -0,0 +1,86 @@
+package com.z0736190100.cardcashian.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URISyntaxException;
+
+/**
+ * Outbound HTTP: a pooled Apache HttpClient (keep-alive, connect/read timeouts, per-route limits) behind a
+ * {@link LoadBalanced} {@link RestTemplate}, so {@code http://<service-id>/...} URIs are resolved to an instance
+ * of the service by Spring Cloud LoadBalancer. Instances come from the discovery client (Eureka when enabled,
+ * {@code spring.cloud.discovery.client.simple.instances} otherwise) and are cached for
+ * {@code spring.cloud.loadbalancer.cache.ttl}, a call does not go to the registry.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean
+    PoolingHttpClientConnectionManager httpClientConnectionManager(HttpClientProperties properties,
+                                                                   MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.maxConnections())
+                .setMaxConnPerRoute(properties.maxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(properties.connectTimeout()))
+                        .setSocketTimeout(Timeout.of(properties.readTimeout()))
+                        .setTimeToLive(TimeValue.of(properties.timeToLive()))
+                        // a pooled connection idle for longer is checked before reuse, the server may have closed it
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        properties.routes().forEach((target, maxConnections) ->
+                connectionManager.setMaxPerRoute(new HttpRoute(httpHost(target)), maxConnections));
+        // leased/pending/available/max connections as httpcomponents.httpclient.pool.* metrics
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "cardcashian").bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean
+    CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager,
+                                   HttpClientProperties properties) {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(properties.connectionRequestTimeout()))
+                        .setResponseTimeout(Timeout.of(properties.readTimeout()))
+                        // used unless the server sends its own Keep-Alive timeout
+                        .setConnectionKeepAlive(TimeValue.of(properties.keepAlive()))
+                        .build())
+                .evictIdleConnections(TimeValue.of(properties.keepAlive()))
+                .evictExpiredConnections()
+                .build();
+    }
+
+    @Bean
+    @LoadBalanced
+    RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder, CloseableHttpClient httpClient) {
+        return restTemplateBuilder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .build();
+    }
+
+    private static HttpHost httpHost(String target) {
+        try {
+            return HttpHost.create(target);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Not a route: " + target, e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.z0736190100.cardcashian.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Connection pool and timeouts of the outbound HTTP client behind the {@code RestTemplate} bean.
+ *
+ * @param maxConnections           open connections at most, over all routes
+ * @param maxConnectionsPerRoute   open connections at most to one target (scheme, host and port)
+ * @param routes                   per-route overrides of {@code maxConnectionsPerRoute}, keyed by target URI,
+ *                                 e.g. {@code "[http://10.0.0.7:8081]": 100}
+ * @param connectTimeout           how long establishing a connection may take
+ * @param connectionRequestTimeout how long a request waits for a connection from an exhausted pool
+ * @param readTimeout              longest silence while waiting for (a part of) the response
+ * @param keepAlive                how long an idle connection is kept for reuse unless the server says otherwise
+ * @param timeToLive               connections are closed after this long, idle or not, so that they are spread
+ *                                 over new instances too
+ */
+@ConfigurationProperties("cardcashian.http-client")
+public record HttpClientProperties(@DefaultValue("200") int maxConnections,
+                                   @DefaultValue("50") int maxConnectionsPerRoute,
+                                   Map<String, Integer> routes,
+                                   @DefaultValue("2s") Duration connectTimeout,
+                                   @DefaultValue("2s") Duration connectionRequestTimeout,
+                                   @DefaultValue("5s") Duration readTimeout,
+                                   @DefaultValue("30s") Duration keepAlive,
+                                   @DefaultValue("5m") Duration timeToLive) {
+
+    public HttpClientProperties {
+        routes = routes == null ? Map.of() : Map.copyOf(routes);
+    }
+}
@@ -1,8 +1,15 @@
 package com.z0736190100.cardcashian.config;
 
+import com.z0736190100.cardcashian.security.CachingPasswordEncoder;
+import com.z0736190100.cardcashian.security.CredentialCacheProperties;
+import com.z0736190100.cardcashian.security.RateLimitFilter;
+import com.z0736190100.cardcashian.security.RateLimitProperties;
+import com.z0736190100.cardcashian.security.TokenBucketRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.ObjectPostProcessor;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -11,6 +18,8 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.header.HeaderWriterFilter;
 
 
 @Configuration
@@ -20,20 +29,44 @@ public class SecurityConfig {
     public static final String ROLE_NON_OWNER = "NON-OWNER";
 
     @Bean
-    SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain filterChain(HttpSecurity http, RateLimitProperties rateLimit) throws Exception {
         http
                 .authorizeHttpRequests(request -> request
                         .requestMatchers("/cashcards/**")
-                        .hasRole(ROLE_CARD_OWNER))
+                        .hasRole(ROLE_CARD_OWNER)
+                        // health for load balancers and probes; metrics tell request rates, users and pool
+                        // sizes, so they are only for authenticated clients (e.g. a Prometheus scrape user)
+                        .requestMatchers("/actuator/health", "/actuator/health/**")
+                        .permitAll()
+                        .requestMatchers("/actuator/**")
+                        .authenticated())
                 .httpBasic(Customizer.withDefaults())
+                // before the request is handled: once a change stream is handed to its sender thread the
+                // response must not be touched by the request thread any more
+                .headers(headers -> headers.addObjectPostProcessor(new ObjectPostProcessor<HeaderWriterFilter>() {
+                    @Override
+                    public <O extends HeaderWriterFilter> O postProcess(O filter) {
+                        filter.setShouldWriteHeadersEagerly(true);
+                        return filter;
+                    }
+                }))
                 .csrf(csrf -> csrf.disable());
+        if (rateLimit.enabled()) {
+            // not a bean: Spring Boot would register it a second time, outside the security chain
+            TokenBucketRateLimiter rateLimiter =
+                    new TokenBucketRateLimiter(rateLimit.maxOwners(), rateLimit.idleTimeout());
+            http.addFilterAfter(new RateLimitFilter(rateLimiter, rateLimit), BasicAuthenticationFilter.class);
+        }
 
         return http.build();
     }
 
     @Bean
-    PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    PasswordEncoder passwordEncoder(CredentialCacheProperties credentialCache, MeterRegistry meterRegistry) {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder();
+        // BCrypt is deliberately slow, don't pay for it on every request of an already verified client
+        return credentialCache.enabled() ? new CachingPasswordEncoder(bcrypt, credentialCache, meterRegistry)
+                : bcrypt;
     }
 
     @Bean
@@ -0,0 +1,82 @@
+package com.z0736190100.cardcashian.config;
+
+import com.z0736190100.cardcashian.repo.ShardRoutingDataSource;
+import com.z0736190100.cardcashian.repo.ShardingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.jdbc.repository.config.DialectResolver;
+import org.springframework.data.relational.core.dialect.Dialect;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sharded mode ({@code cardcashian.sharding.enabled=true}): the application's {@code DataSource} is a
+ * {@link ShardRoutingDataSource} over one Hikari pool per configured shard instead of {@code spring.datasource}.
+ * <p>
+ * Like {@code spring.sql.init}, embedded shards (or all of them with {@code spring.sql.init.mode=always}) are
+ * created from {@code schema.sql}; each shard's {@code CASH_CARD} identity then starts at
+ * {@link ShardRoutingDataSource#firstId} and steps by {@link ShardRoutingDataSource#MAX_SHARDS}. Other databases need
+ * the same after the schema:
+ * {@code ALTER TABLE CASH_CARD ALTER COLUMN ID RESTART WITH <1024 + shard> SET INCREMENT BY 1024}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "cardcashian.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    ShardRoutingDataSource dataSource(ShardingProperties properties, Environment environment,
+                                      MeterRegistry meterRegistry) {
+        Binder binder = Binder.get(environment);
+        DatabaseInitializationMode initialization = binder
+                .bind("spring.sql.init.mode", DatabaseInitializationMode.class)
+                .orElse(DatabaseInitializationMode.EMBEDDED);
+        List<HikariDataSource> shards = new ArrayList<>();
+        for (int shard = 0; shard < properties.shards().size(); shard++) {
+            ShardingProperties.Shard connection = properties.shards().get(shard);
+            HikariDataSource pool = new HikariDataSource();
+            // every shard is pooled like the single database would be
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+            pool.setPoolName((pool.getPoolName() != null ? pool.getPoolName() : "cardcashian") + "-shard-" + shard);
+            pool.setJdbcUrl(connection.url());
+            pool.setUsername(connection.username());
+            pool.setPassword(connection.password());
+            // hikaricp.* metrics per shard, tagged with the pool name
+            pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            shards.add(pool);
+            if (initialization == DatabaseInitializationMode.ALWAYS
+                    || initialization == DatabaseInitializationMode.EMBEDDED
+                    && EmbeddedDatabaseConnection.isEmbedded(pool)) {
+                initialize(pool, shard);
+            }
+        }
+        return new ShardRoutingDataSource(shards, properties.virtualNodes());
+    }
+
+    /**
+     * Spring Data JDBC would otherwise detect the dialect on a connection of the routing {@code DataSource}, which
+     * has none before a shard is selected. All shards are the same kind of database.
+     */
+    @Bean
+    Dialect jdbcDialect(ShardRoutingDataSource dataSource) {
+        return DialectResolver.getDialect(new JdbcTemplate(dataSource.shard(0)));
+    }
+
+    private static void initialize(HikariDataSource shard, int number) {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(shard);
+        new JdbcTemplate(shard).execute("ALTER TABLE CASH_CARD ALTER COLUMN ID RESTART WITH "
+                + ShardRoutingDataSource.firstId(number) + " SET INCREMENT BY " + ShardRoutingDataSource.MAX_SHARDS);
+    }
+}
@@ -0,0 +1,450 @@
+package com.z0736190100.cardcashian.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.z0736190100.cardcashian.model.CashCardChange;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fans the changes of an owner's cards out to the owner's {@code GET /cashcards/changes} streams.
+ * <p>
+ * Writers only number the event, keep it in a ring of the most recent events and put it into each subscriber's
+ * bounded queue; they never wait for a connection, and only for writers of the same owner (or one sharing its lock
+ * stripe). A few sender threads write the queues to the connections. A subscriber whose queue is full is
+ * disconnected instead: it resumes from the ring with {@code Last-Event-ID} like any client that lost its
+ * connection, or is told to {@code reset} (reload its cards) if the events it missed are no longer kept. The ring
+ * is looked up without holding up any writer: events published meanwhile are held back by the subscriber until
+ * the missed ones are queued.
+ * <p>
+ * Event ids are resume tokens, {@code <epoch>-<sequence>}: the epoch is random per process, so the token of
+ * another instance or of a previous run is never mistaken for a position in this ring. Events are only those of
+ * writes handled by this instance.
+ * <p>
+ * On shutdown the streams are completed before the web server stops, so that clients reconnect (to another
+ * instance) right away instead of waiting for the connection to time out.
+ */
+@Component
+class CashCardChangeBroadcaster implements SmartLifecycle, DisposableBean {
+
+    static final String CREATED = "created";
+    static final String UPDATED = "updated";
+    static final String ADJUSTED = "adjusted";
+    static final String DELETED = "deleted";
+    // sent first on a new stream (the position to resume from) and instead of events that cannot be replayed
+    static final String READY = "ready";
+    static final String RESET = "reset";
+
+    // a keep-alive comment instead of an event
+    static final Event HEARTBEAT = new Event(null, null, null);
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ObjectMapper objectMapper;
+    private final CashCardChangeProperties properties;
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    // per owner (striped), orders an owner's numbering, ring slots and registration: a new subscriber gets each of
+    // the owner's events either replayed or live, once
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicReferenceArray<Retained> recent;
+    // copy-on-write: iterated by every publish, changed only when a stream opens or closes
+    private final Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Counter dropped;
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats;
+    private volatile boolean running;
+
+    CashCardChangeBroadcaster(CashCardChangeProperties properties, ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.recent = new AtomicReferenceArray<>(properties.replayCapacity());
+        for (int stripe = 0; stripe < LOCK_STRIPES; stripe++) {
+            locks[stripe] = new ReentrantLock();
+        }
+        Gauge.builder("cashcards.changes.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open GET /cashcards/changes streams")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("cashcards.changes.dropped")
+                .description("Change streams disconnected for falling behind")
+                .register(meterRegistry);
+        this.senders = Executors.newFixedThreadPool(properties.senderThreads(), daemonThreads("cashcard-changes-"));
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(daemonThreads("cashcard-changes-heartbeat-"));
+        long heartbeat = properties.heartbeat().toMillis();
+        heartbeats.scheduleAtFixedRate(this::sendHeartbeats, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+    }
+
+    void created(String owner, Long id, long amount) {
+        publish(owner, CREATED, CashCardChange.ofAmount(id, amount));
+    }
+
+    void updated(String owner, Long id, long amount) {
+        publish(owner, UPDATED, CashCardChange.ofAmount(id, amount));
+    }
+
+    void adjusted(String owner, Long id, long delta) {
+        publish(owner, ADJUSTED, CashCardChange.ofDelta(id, delta));
+    }
+
+    void deleted(String owner, Long id) {
+        publish(owner, DELETED, CashCardChange.of(id));
+    }
+
+    /**
+     * A stream of the owner's changes, resumed after {@code lastEventId} if given.
+     */
+    SseEmitter subscribe(String owner, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(properties.timeout().toMillis());
+        Runnable cancel = subscribe(owner, lastEventId, new Sink() {
+            @Override
+            public void send(Event event) throws IOException {
+                emitter.send(event == HEARTBEAT
+                        ? SseEmitter.event().comment("")
+                        : SseEmitter.event()
+                                .id(event.id())
+                                .name(event.name())
+                                .data(event.data(), MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        });
+        emitter.onCompletion(cancel);
+        emitter.onTimeout(cancel);
+        emitter.onError(error -> cancel.run());
+        return emitter;
+    }
+
+    /**
+     * Registers a subscriber.
+     *
+     * @return closes the subscription
+     */
+    Runnable subscribe(String owner, String lastEventId, Sink sink) {
+        Subscriber subscriber = new Subscriber(owner, sink);
+        long upTo;
+        ReentrantLock lock = lockOf(owner);
+        lock.lock();
+        try {
+            // the owner's events up to here are in the ring, all later ones are offered to the subscriber
+            upTo = sequence.get();
+            subscribers.compute(owner, (key, ofOwner) -> {
+                List<Subscriber> list = ofOwner != null ? ofOwner : new CopyOnWriteArrayList<>();
+                list.add(subscriber);
+                return list;
+            });
+            subscriberCount.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+        if (!subscriber.resume(backlog(owner, lastEventId, upTo))) {
+            dropped.increment();
+            subscriber.close();
+        }
+        return subscriber::close;
+    }
+
+    // concurrent with writers of any owner: a slot overwritten while it is read may have been one of the owner's
+    private List<Event> backlog(String owner, String lastEventId, long upTo) {
+        if (lastEventId == null) {
+            return List.of(new Event(token(upTo), READY, "{}"));
+        }
+        long resumeAfter = sequenceOf(lastEventId);
+        // events resumeAfter + 1 up to upTo must all still be in the ring
+        if (resumeAfter < 0 || resumeAfter > upTo || resumeAfter < upTo - recent.length()) {
+            return List.of(new Event(token(upTo), RESET, "{}"));
+        }
+        List<Event> missed = new ArrayList<>();
+        for (long missedSequence = resumeAfter + 1; missedSequence <= upTo; missedSequence++) {
+            Retained retained = recent.get(slotOf(missedSequence));
+            if (retained == null || retained.sequence() < missedSequence) {
+                // not written yet, so another owner's: the owner's own are all written by upTo
+                continue;
+            }
+            if (retained.sequence() > missedSequence) {
+                return List.of(new Event(token(upTo), RESET, "{}"));
+            }
+            if (retained.owner().equals(owner)) {
+                missed.add(retained.event());
+            }
+        }
+        return missed.size() <= properties.bufferSize()
+                ? missed
+                : List.of(new Event(token(upTo), RESET, "{}"));
+    }
+
+    private void publish(String owner, String name, CashCardChange change) {
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(change);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        ReentrantLock lock = lockOf(owner);
+        lock.lock();
+        try {
+            long eventSequence = sequence.incrementAndGet();
+            Event event = new Event(token(eventSequence), name, data);
+            recent.set(slotOf(eventSequence), new Retained(eventSequence, owner, event));
+            List<Subscriber> ofOwner = subscribers.get(owner);
+            if (ofOwner != null) {
+                for (Subscriber subscriber : ofOwner) {
+                    if (!subscriber.offer(event)) {
+                        dropped.increment();
+                        subscriber.close();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockOf(String owner) {
+        return locks[Math.floorMod(owner.hashCode(), LOCK_STRIPES)];
+    }
+
+    private int slotOf(long eventSequence) {
+        return (int) (eventSequence % recent.length());
+    }
+
+    private void sendHeartbeats() {
+        for (List<Subscriber> ofOwner : subscribers.values()) {
+            for (Subscriber subscriber : ofOwner) {
+                if (!subscriber.offer(HEARTBEAT)) {
+                    dropped.increment();
+                    subscriber.close();
+                }
+            }
+        }
+    }
+
+    private String token(long eventSequence) {
+        return epoch + "-" + eventSequence;
+    }
+
+    // -1 for a token that is not one of this process
+    private long sequenceOf(String token) {
+        int separator = token.lastIndexOf('-');
+        if (separator < 0 || !token.substring(0, separator).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(token.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        closeAll();
+        // the senders complete the streams, then exit
+        senders.shutdown();
+        try {
+            senders.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // stopped first: before the web server stops taking requests and waits for the ones in flight
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        heartbeats.shutdownNow();
+        closeAll();
+        senders.shutdown();
+        senders.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    private void closeAll() {
+        subscribers.values().forEach(ofOwner -> ofOwner.forEach(Subscriber::close));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * One server-sent event: {@code id} is the resume token, {@code data} the JSON of a {@link CashCardChange}.
+     */
+    record Event(String id, String name, String data) {
+    }
+
+    private record Retained(long sequence, String owner, Event event) {
+    }
+
+    /**
+     * Where a subscriber's events are written to, one at a time.
+     */
+    interface Sink {
+
+        void send(Event event) throws IOException;
+
+        void close();
+    }
+
+    private final class Subscriber {
+
+        private final String owner;
+        private final Sink sink;
+        private final BlockingQueue<Event> queue;
+        // at most one sender thread works on this subscriber at a time, which keeps the events in order
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // events published while the missed ones are looked up, null once those are queued
+        private volatile List<Event> held = new ArrayList<>();
+
+        Subscriber(String owner, Sink sink) {
+            this.owner = owner;
+            this.sink = sink;
+            this.queue = new ArrayBlockingQueue<>(properties.bufferSize());
+        }
+
+        // false if the queue is full
+        boolean offer(Event event) {
+            if (closed.get()) {
+                return true;
+            }
+            if (held != null) {
+                synchronized (this) {
+                    if (held != null) {
+                        held.add(event);
+                        return held.size() <= properties.bufferSize();
+                    }
+                }
+            }
+            if (!queue.offer(event)) {
+                return false;
+            }
+            scheduleSend();
+            return true;
+        }
+
+        // queues the missed events, then the held ones; false if they do not fit
+        synchronized boolean resume(List<Event> backlog) {
+            boolean fits = true;
+            for (Event event : backlog) {
+                fits &= queue.offer(event);
+            }
+            for (Event event : held) {
+                fits &= queue.offer(event);
+            }
+            held = null;
+            scheduleSend();
+            return fits;
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscribers.computeIfPresent(owner, (key, ofOwner) -> {
+                    ofOwner.remove(this);
+                    return ofOwner.isEmpty() ? null : ofOwner;
+                });
+                subscriberCount.decrementAndGet();
+                // the sender closes the sink, after a write it may be in the middle of
+                scheduleSend();
+            }
+        }
+
+        private void scheduleSend() {
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::send);
+                } catch (RuntimeException e) {
+                    // shutting down
+                    sending.set(false);
+                }
+            }
+        }
+
+        private void send() {
+            while (true) {
+                Event event;
+                while (!closed.get() && (event = queue.poll()) != null) {
+                    try {
+                        sink.send(event);
+                    } catch (IOException | RuntimeException e) {
+                        // the client went away
+                        close();
+                    }
+                }
+                if (closed.get()) {
+                    queue.clear();
+                    closeSink();
+                    // sending stays set: nothing is scheduled for this subscriber any more
+                    return;
+                }
+                sending.set(false);
+                // an event or a close that came in after the last look is this thread's, unless another took over
+                if ((queue.isEmpty() && !closed.get()) || !sending.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        private void closeSink() {
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                // already completed by the container (timeout, client gone)
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.z0736190100.cardcashian.controller;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@code GET /cashcards/changes} event stream.
+ *
+ * @param bufferSize     events queued per subscriber at most; a subscriber that falls further behind is
+ *                       disconnected and has to resume with {@code Last-Event-ID}
+ * @param replayCapacity most recent events (of all owners) kept for resuming
+ * @param senderThreads  threads writing queued events to the subscribers' connections
+ * @param heartbeat      interval of the keep-alive comments sent to every subscriber
+ * @param timeout        a stream is closed after this long; clients reconnect and resume
+ */
+@ConfigurationProperties("cardcashian.changes")
+public record CashCardChangeProperties(@DefaultValue("256") int bufferSize,
+                                       @DefaultValue("10000") int replayCapacity,
+                                       @DefaultValue("4") int senderThreads,
+                                       @DefaultValue("15s") Duration heartbeat,
+                                       @DefaultValue("30m") Duration timeout) {
+}
@@ -1,39 +1,127 @@
 package com.z0736190100.cardcashian.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.model.CashCardAdjustment;
+import com.z0736190100.cardcashian.model.CashCardBatchResult;
+import com.z0736190100.cardcashian.model.CashCardSummary;
+import com.z0736190100.cardcashian.repo.CashCardCache;
 import com.z0736190100.cardcashian.repo.CashCardRepository;
+import com.z0736190100.cardcashian.repo.CashCardSummaryProperties;
+import com.z0736190100.cardcashian.repo.CashCardWriteBehind;
+import com.z0736190100.cardcashian.repo.IdempotencyStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/cashcards")
 public class CashCardController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+    // the key column's size
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final CashCardRepository cashCardRepository;
+    private final CashCardCache cashCardCache;
+    private final CashCardBatchProperties batchProperties;
+    private final CashCardSummaryProperties summaryProperties;
+    private final IdempotencyStore idempotencyStore;
+    // null unless cardcashian.write-behind.enabled=true
+    private final CashCardWriteBehind writeBehind;
+    private final CashCardChangeBroadcaster changes;
+    private final ObjectMapper objectMapper;
+    private final DistributionSummary offsetPageSize;
+    private final DistributionSummary cursorPageSize;
 
-    private CashCardController(CashCardRepository cashCardRepository) {
+    private CashCardController(CashCardRepository cashCardRepository, CashCardCache cashCardCache,
+                               CashCardBatchProperties batchProperties, CashCardSummaryProperties summaryProperties,
+                               IdempotencyStore idempotencyStore, ObjectProvider<CashCardWriteBehind> writeBehind,
+                               CashCardChangeBroadcaster changes, ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry) {
         this.cashCardRepository = cashCardRepository;
+        this.cashCardCache = cashCardCache;
+        this.batchProperties = batchProperties;
+        this.summaryProperties = summaryProperties;
+        this.idempotencyStore = idempotencyStore;
+        this.writeBehind = writeBehind.getIfAvailable();
+        this.changes = changes;
+        this.objectMapper = objectMapper;
+        // registered once, recording is then a plain lock-free update on the request path
+        this.offsetPageSize = pageSize(meterRegistry, "offset");
+        this.cursorPageSize = pageSize(meterRegistry, "cursor");
+    }
+
+    private static DistributionSummary pageSize(MeterRegistry meterRegistry, String mode) {
+        return DistributionSummary.builder("cashcards.page.size")
+                .description("Number of CashCards returned per findAll page")
+                .baseUnit("cashcards")
+                .tag("mode", mode)
+                .register(meterRegistry);
     }
 
+    // checkNotModified answers a matching If-None-Match with 304 and sets the ETag header on the full response too
     @GetMapping("/{id}")
-    private ResponseEntity<CashCard> findById(@PathVariable Long id, Principal principal) {
+    private ResponseEntity<CashCard> findById(@PathVariable Long id, Principal principal, WebRequest request) {
+
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            // revalidation only needs the version, not the row
+            Long version = cashCardCache.findVersionByIdAndOwner(id, principal.getName());
+            if (version != null && request.checkNotModified(CashCardHeaders.eTagOf(version))) {
+                return null;
+            }
+        }
 
         Optional<CashCard> cashCardOptional = Optional.ofNullable(
-                cashCardRepository.findByIdAndOwner(id, principal.getName()));
+                cashCardCache.findByIdAndOwner(id, principal.getName()));
 
-        return cashCardOptional.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+        return cashCardOptional
+                .map(cashCard -> ResponseEntity.ok().eTag(CashCardHeaders.eTagOf(cashCard.version())).body(cashCard))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @GetMapping()
-    private ResponseEntity<Iterable<CashCard>> findAll(Pageable pageable, Principal principal) {
+    private ResponseEntity<Iterable<CashCard>> findAll(Pageable pageable, Principal principal,
+                                                       @RequestParam(required = false) String after,
+                                                       WebRequest request) {
+
+        if (after != null) {
+            return findAllAfter(after, pageable.getPageSize(), principal, request);
+        }
 
         Page<CashCard> page = cashCardRepository.findByOwner(principal.getName(),
                 PageRequest.of(
@@ -42,53 +130,303 @@ public class CashCardController {
                         pageable.getSort()
                 )
         );
+        offsetPageSize.record(page.getNumberOfElements());
+
+        return pageOf(page.getContent(), null, request);
+    }
+
+    // keyset ("cursor") mode: seeks on the (owner, id) index, so deep pages cost the same as the first one
+    // and no count query is issued; an empty cursor starts at the beginning
+    private ResponseEntity<Iterable<CashCard>> findAllAfter(String cursor, int size, Principal principal,
+                                                            WebRequest request) {
+
+        long afterId;
+        try {
+            afterId = cursor.isEmpty() ? Long.MIN_VALUE : CashCardHeaders.decodeCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // one extra row tells whether there is a next page
+        List<CashCard> cashCards = cashCardRepository.findByOwnerAfter(principal.getName(), afterId, size + 1);
+        if (cashCards.size() <= size) {
+            cursorPageSize.record(cashCards.size());
+            return pageOf(cashCards, null, request);
+        }
+        cursorPageSize.record(size);
+
+        List<CashCard> page = cashCards.subList(0, size);
+        return pageOf(page, CashCardHeaders.encodeCursor(page.get(size - 1).id()), request);
+    }
+
+    // the ETag is taken from the page just read: a revalidation costs the page's own query, but the page is only
+    // serialized and sent if it changed
+    private static ResponseEntity<Iterable<CashCard>> pageOf(List<CashCard> cashCards, String nextCursor,
+                                                             WebRequest request) {
+        if (request.checkNotModified(CashCardHeaders.eTagOfPage(cashCards, nextCursor))) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+        if (nextCursor != null) {
+            ok.header(CashCardHeaders.NEXT_CURSOR, nextCursor);
+        }
+        return ok.body(cashCards);
+    }
+
+    @GetMapping("/summary")
+    private ResponseEntity<CashCardSummary> summarizeCashCards(Principal principal) {
+
+        CashCardSummary summary = summaryProperties.runningTotals()
+                ? cashCardRepository.findRunningSummaryByOwner(principal.getName())
+                : cashCardRepository.summarizeByOwner(principal.getName());
 
-        return ResponseEntity.ok(page.getContent());
+        return ResponseEntity.ok(summary != null ? summary : CashCardSummary.EMPTY);
     }
 
+    // NDJSON straight from a forward-only JDBC cursor: memory use does not depend on the number of cards
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    private ResponseEntity<StreamingResponseBody> exportCashCards(Principal principal) {
+
+        String owner = principal.getName();
+        ObjectWriter cashCardWriter = objectMapper.writerFor(CashCard.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = cashCardWriter.createGenerator(outputStream)) {
+                // records are separated by our newlines, not by Jackson's default root value separator
+                generator.setRootValueSeparator(null);
+                cashCardRepository.streamByOwner(owner, cashCard -> {
+                    try {
+                        cashCardWriter.writeValue(generator, cashCard);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // server-sent events for every change of the principal's cards from now on, or since the event named by
+    // Last-Event-ID (sent by EventSource when it reconnects); the container thread is released right away
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    private SseEmitter streamChanges(@RequestHeader(name = LAST_EVENT_ID_HEADER, required = false) String lastEventId,
+                                     Principal principal) {
+        return changes.subscribe(principal.getName(), lastEventId);
+    }
+
+    // with an Idempotency-Key a retried create gets the first attempt's 201 and Location, without writing again
     @PostMapping
     private ResponseEntity<Void> createCashCard(@RequestBody CashCard newCashCardRequest,
+                                                @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false)
+                                                String idempotencyKey,
                                                 UriComponentsBuilder ucb, Principal principal) {
 
         CashCard cashCardWithOwner = new CashCard(null, newCashCardRequest.amount(), principal.getName());
-        CashCard savedCashCard = cashCardRepository.save(cashCardWithOwner);
+        Long id;
+        boolean replayed = false;
+        if (idempotencyKey == null) {
+            id = insert(cashCardWithOwner);
+        } else if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return ResponseEntity.badRequest().build();
+        } else {
+            // never write-behind: the card has to be inserted in the key's transaction (jdbc store), so that a
+            // lost race rolls it back, and must not hold that transaction's connection while the writer needs one
+            IdempotencyStore.Outcome outcome;
+            try {
+                outcome = idempotencyStore.createOnce(principal.getName(), idempotencyKey,
+                        () -> cashCardRepository.save(cashCardWithOwner).id());
+            } catch (DuplicateKeyException e) {
+                // the key kept changing hands concurrently, nothing was created: like a request still in progress
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            id = outcome.cardId();
+            replayed = outcome.replayed();
+        }
+        if (!replayed) {
+            changes.created(principal.getName(), id, cashCardWithOwner.amount());
+        }
 
         // to meet specifications requirement for "create" method:
         // https://developer.mozilla.org/en-US/docs/Web/HTTP/Status/201
         URI locationOfNewCashCard = ucb
                 .path("cashcards/{id}")
-                .buildAndExpand(savedCashCard.id())
+                .buildAndExpand(id)
                 .toUri();
 
-        return ResponseEntity.created(locationOfNewCashCard).build();
+        ResponseEntity.BodyBuilder created = ResponseEntity.created(locationOfNewCashCard);
+        if (replayed) {
+            created.header(IDEMPOTENT_REPLAYED_HEADER, "true");
+        }
+        return created.build();
+    }
+
+    private Long insert(CashCard cashCard) {
+        if (writeBehind == null) {
+            return cashCardRepository.save(cashCard).id();
+        }
+        try {
+            return writeBehind.insert(cashCard).join().id();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException timeout) {
+                // the writer is stuck (or gone): answered like a full queue, not with a request thread lost for good
+                throw new RejectedExecutionException("CashCard write-behind did not write in time", timeout);
+            }
+            // the batch's own exception, as if this request had run the INSERT itself
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
     }
 
+    // only thrown by the write-behind queue when it is full or stuck: back off instead of waiting without bound
+    @ExceptionHandler(RejectedExecutionException.class)
+    private ResponseEntity<Void> writeBehindQueueFull() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    // a body Jackson cannot read, e.g. a card without an amount: answered here, as the error dispatch is not permitted
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    private ResponseEntity<Void> unreadableBody() {
+        return ResponseEntity.badRequest().build();
+    }
+
+    // save() is a version-guarded UPDATE (... WHERE ID = ? AND VERSION = ?): with If-Match the client's version is
+    // the guard, 412 if the card changed since; without it the version just read, 409 if a concurrent PUT won
     @PutMapping("/{requestedId}")
     private ResponseEntity<Void> putCashCard(@PathVariable Long requestedId, @RequestBody CashCard cashCardUpdate,
+                                             @RequestHeader(name = HttpHeaders.IF_MATCH, required = false)
+                                             List<String> ifMatch,
                                              Principal principal) {
 
-        CashCard cashCard = cashCardRepository.findByIdAndOwner(requestedId, principal.getName());
+        CashCard cashCard = cashCardCache.findByIdAndOwner(requestedId, principal.getName());
+
+        if (cashCard == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // If-Match may list several ETags: any of them naming the version read lets the update through, guarded by
+        // that version, so a concurrent change in between still ends in 412
+        boolean conditional = ifMatch != null && !ifMatch.contains("*");
+        if (conditional && !CashCardHeaders.matches(ifMatch, cashCard.version())) {
+            cashCardCache.evict(cashCard.id());
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+
+        CashCard savedCashCard;
+        try {
+            savedCashCard = cashCardRepository.save(new CashCard(cashCard.id(), cashCardUpdate.amount(),
+                    principal.getName(), cashCard.version()));
+        } catch (OptimisticLockingFailureException e) {
+            cashCardCache.evict(cashCard.id());
+            return ResponseEntity.status(conditional ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).build();
+        }
+        cashCardCache.evict(savedCashCard.id());
+        changes.updated(principal.getName(), savedCashCard.id(), savedCashCard.amount());
+
+        return ResponseEntity.noContent().eTag(CashCardHeaders.eTagOf(savedCashCard.version())).build();
+    }
+
+    // one UPDATE ... SET AMOUNT = AMOUNT + ? instead of GET, compute and PUT: no lost updates between concurrent callers
+    @PostMapping("/{id}/adjust")
+    private ResponseEntity<Void> adjustCashCard(@PathVariable Long id, @RequestBody CashCardAdjustment adjustment,
+                                                Principal principal) {
+
+        if (adjustment.delta() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!cashCardRepository.adjustAmount(id, principal.getName(), adjustment.delta())) {
+            return ResponseEntity.notFound().build();
+        }
+        cashCardCache.evict(id);
+        changes.adjusted(principal.getName(), id, adjustment.delta());
+        return ResponseEntity.noContent().build();
+    }
 
-        if (cashCard != null) {
-            CashCard updatedCashCard = new CashCard(cashCard.id(), cashCardUpdate.amount(), principal.getName());
+    @PostMapping("/batch")
+    private ResponseEntity<List<CashCardBatchResult>> createCashCards(@RequestBody List<CashCard> newCashCardRequests,
+                                                                      UriComponentsBuilder ucb, Principal principal) {
 
-            cashCardRepository.save(updatedCashCard);
+        if (newCashCardRequests.size() > batchProperties.maxItems()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<CashCardBatchResult> results = new ArrayList<>(newCashCardRequests.size());
+        for (List<CashCard> chunk : batchProperties.chunksOf(newCashCardRequests)) {
+            List<CashCard> cashCardsWithOwner = chunk.stream()
+                    .map(request -> new CashCard(null, request.amount(), principal.getName()))
+                    .toList();
 
-            return ResponseEntity.noContent().build();
+            for (CashCard savedCashCard : cashCardRepository.insertAll(cashCardsWithOwner)) {
+                URI locationOfNewCashCard = ucb.cloneBuilder()
+                        .path("cashcards/{id}")
+                        .buildAndExpand(savedCashCard.id())
+                        .toUri();
+                results.add(new CashCardBatchResult(savedCashCard.id(), HttpStatus.CREATED.value(), locationOfNewCashCard));
+                changes.created(principal.getName(), savedCashCard.id(), savedCashCard.amount());
+            }
         }
 
-        return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(results);
+    }
+
+    @PutMapping("/batch")
+    private ResponseEntity<List<CashCardBatchResult>> putCashCards(@RequestBody List<CashCard> cashCardUpdates,
+                                                                   Principal principal) {
+
+        if (cashCardUpdates.size() > batchProperties.maxItems()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<CashCardBatchResult> results = new ArrayList<>(cashCardUpdates.size());
+        for (List<CashCard> chunk : batchProperties.chunksOf(cashCardUpdates)) {
+            List<Long> requestedIds = chunk.stream()
+                    .map(CashCard::id)
+                    .filter(Objects::nonNull)
+                    .toList();
+            // one ownership check for the whole chunk instead of a findByIdAndOwner per card
+            Set<Long> ownedIds = requestedIds.isEmpty()
+                    ? Set.of()
+                    : new HashSet<>(cashCardRepository.findIdsByOwnerAndIdIn(principal.getName(), requestedIds));
+
+            List<CashCard> updatedCashCards = chunk.stream()
+                    .filter(update -> ownedIds.contains(update.id()))
+                    .map(update -> new CashCard(update.id(), update.amount(), principal.getName()))
+                    .toList();
+            int[] updatedRows = cashCardRepository.updateAmounts(updatedCashCards);
+            cashCardCache.evictAll(ownedIds);
+
+            int updatedIndex = 0;
+            for (CashCard update : chunk) {
+                HttpStatus status;
+                if (update.id() == null) {
+                    status = HttpStatus.BAD_REQUEST;
+                } else if (ownedIds.contains(update.id()) && updatedRows[updatedIndex++] > 0) {
+                    status = HttpStatus.NO_CONTENT;
+                    changes.updated(principal.getName(), update.id(), update.amount());
+                } else {
+                    status = HttpStatus.NOT_FOUND;
+                }
+                results.add(new CashCardBatchResult(update.id(), status.value(), null));
+            }
+        }
+
+        return ResponseEntity.ok(results);
     }
 
     @DeleteMapping("/{id}")
     private ResponseEntity<Void> deleteCashCard(@PathVariable Long id, Principal principal) {
 
-        if (!cashCardRepository.existsByIdAndOwner(id, principal.getName())) {
+        if (!cashCardRepository.deleteByIdAndOwner(id, principal.getName())) {
             return ResponseEntity.notFound().build();
         }
-        cashCardRepository.deleteById(id);
+        cashCardCache.evict(id);
+        changes.deleted(principal.getName(), id);
         return ResponseEntity.noContent().build();
     }
 
 }
-
@@ -1,6 +0,0 @@
-package com.z0736190100.cardcashian.model;
-
-import org.springframework.data.annotation.Id;
-
-public record CashCard(@Id Long id, Double amount, String owner) {
-}
@@ -0,0 +1,23 @@
+package com.z0736190100.cardcashian.repo;
+
+import com.z0736190100.cardcashian.model.CashCard;
+
+import java.util.List;
+
+/**
+ * Multi-row writes of {@link CashCard}s, each call is sent to the database as a single JDBC batch.
+ */
+public interface CashCardBatchRepository {
+
+    /**
+     * Inserts all cards in one transaction and returns them, in the same order, with their generated ids.
+     */
+    List<CashCard> insertAll(List<CashCard> cashCards);
+
+    /**
+     * Updates the amount of every card that belongs to the card's owner.
+     *
+     * @return the number of updated rows per card, in the same order
+     */
+    int[] updateAmounts(List<CashCard> cashCards);
+}
@@ -0,0 +1,64 @@
+package com.z0736190100.cardcashian.repo;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class CashCardBatchRepositoryImpl implements CashCardBatchRepository {
+
+    private static final String INSERT = "INSERT INTO CASH_CARD (AMOUNT, OWNER) VALUES (:amount, :owner)";
+    private static final String UPDATE_AMOUNT =
+            "UPDATE CASH_CARD SET AMOUNT = :amount, VERSION = VERSION + 1 WHERE ID = :id AND OWNER = :owner";
+
+    private final NamedParameterJdbcOperations jdbc;
+
+    CashCardBatchRepositoryImpl(NamedParameterJdbcOperations jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    // one commit for the whole batch, and none of it if any row fails (the sharded mode: one per shard)
+    @Override
+    @Transactional
+    public List<CashCard> insertAll(List<CashCard> cashCards) {
+        if (cashCards.isEmpty()) {
+            return List.of();
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(INSERT, parametersOf(cashCards), keyHolder, new String[]{"ID"});
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<CashCard> saved = new ArrayList<>(cashCards.size());
+        for (int i = 0; i < cashCards.size(); i++) {
+            CashCard cashCard = cashCards.get(i);
+            Long id = ((Number) keys.get(i).get("ID")).longValue();
+            // VERSION starts at its column default
+            saved.add(new CashCard(id, cashCard.amount(), cashCard.owner(), 0L));
+        }
+        return saved;
+    }
+
+    @Override
+    public int[] updateAmounts(List<CashCard> cashCards) {
+        if (cashCards.isEmpty()) {
+            return new int[0];
+        }
+        return jdbc.batchUpdate(UPDATE_AMOUNT, parametersOf(cashCards));
+    }
+
+    private static SqlParameterSource[] parametersOf(List<CashCard> cashCards) {
+        return cashCards.stream()
+                .map(cashCard -> new MapSqlParameterSource()
+                        .addValue("id", cashCard.id())
+                        .addValue("amount", cashCard.amount())
+                        .addValue("owner", cashCard.owner()))
+                .toArray(SqlParameterSource[]::new);
+    }
+}
@@ -0,0 +1,62 @@
+package com.z0736190100.cardcashian.repo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.z0736190100.cardcashian.model.CashCard;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read-through cache in front of {@link CashCardRepository#findByIdAndOwner}, bounded by size and time; a miss in
+ * {@link #findVersionByIdAndOwner} reads only the version column and caches nothing.
+ * <p>
+ * Cards are cached by id; the owner is checked on every hit, so a card is only ever served to its owner.
+ * Whoever writes a card must {@link #evict} it <em>after</em> the write: an eviction waits for a concurrent
+ * load of the same id, so a load that read the old row can never outlive the write.
+ */
+@Component
+public class CashCardCache {
+
+    private static final String CACHE_NAME = "cashcards";
+
+    private final CashCardRepository cashCardRepository;
+    private final Cache<Long, CashCard> cashCards;
+
+    CashCardCache(CashCardRepository cashCardRepository, CashCardCacheProperties properties,
+                  MeterRegistry meterRegistry) {
+        this.cashCardRepository = cashCardRepository;
+        this.cashCards = Caffeine.newBuilder()
+                .maximumSize(properties.maxSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build();
+        // hit ratio (cache.gets), evictions (cache.evictions) and load latency (cache.load.duration)
+        CaffeineCacheMetrics.monitor(meterRegistry, cashCards, CACHE_NAME);
+    }
+
+    public CashCard findByIdAndOwner(Long id, String owner) {
+        // misses are not cached: the mapping function returning null leaves no entry behind
+        CashCard cashCard = cashCards.get(id, key -> cashCardRepository.findByIdAndOwner(key, owner));
+        return cashCard != null && cashCard.owner().equals(owner) ? cashCard : null;
+    }
+
+    /**
+     * Version of the card without reading the whole row if it is not cached, {@code null} if there is no such card.
+     */
+    public Long findVersionByIdAndOwner(Long id, String owner) {
+        CashCard cashCard = cashCards.getIfPresent(id);
+        if (cashCard != null) {
+            return cashCard.owner().equals(owner) ? cashCard.version() : null;
+        }
+        return cashCardRepository.findVersionByIdAndOwner(id, owner);
+    }
+
+    public void evict(Long id) {
+        cashCards.invalidate(id);
+    }
+
+    public void evictAll(Iterable<Long> ids) {
+        cashCards.invalidateAll(ids);
+    }
+}
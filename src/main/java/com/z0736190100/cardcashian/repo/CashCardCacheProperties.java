@@ -0,0 +1,17 @@
+package com.z0736190100.cardcashian.repo;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the in-process cache of single {@link com.z0736190100.cardcashian.model.CashCard} lookups.
+ *
+ * @param maxSize upper bound of cached cards, least recently used ones are evicted first
+ * @param ttl     how long a cached card is served before it is read from the database again
+ */
+@ConfigurationProperties("cardcashian.cache.cashcards")
+public record CashCardCacheProperties(@DefaultValue("10000") long maxSize,
+                                      @DefaultValue("10m") Duration ttl) {
+}
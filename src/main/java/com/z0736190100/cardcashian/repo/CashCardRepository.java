@@ -1,15 +1,68 @@
 package com.z0736190100.cardcashian.repo;
 
 import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.model.CashCardSummary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jdbc.repository.query.Modifying;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface CashCardRepository extends CrudRepository<CashCard, Long>,
-        PagingAndSortingRepository<CashCard, Long> {
+        PagingAndSortingRepository<CashCard, Long>, CashCardBatchRepository,
+        CashCardStreamingRepository {
+
+    CashCard findByIdAndOwner(Long id, @ShardKey String owner);
+    Page<CashCard> findByOwner(@ShardKey String owner, PageRequest pageRequest);
+
+    @Query("SELECT * FROM CASH_CARD WHERE OWNER = :owner AND ID > :after ORDER BY ID LIMIT :limit")
+    List<CashCard> findByOwnerAfter(@ShardKey String owner, long after, int limit);
+
+    /**
+     * Adds the (signed) delta to the amount in a single conditional UPDATE, so concurrent adjustments never
+     * overwrite each other.
+     *
+     * @return false if there is no such card of this owner
+     */
+    @Modifying
+    @Query("UPDATE CASH_CARD SET AMOUNT = AMOUNT + :delta, VERSION = VERSION + 1 WHERE ID = :id AND OWNER = :owner")
+    boolean adjustAmount(Long id, @ShardKey String owner, long delta);
+
+    /**
+     * Deletes the card only if it belongs to the owner, in one statement.
+     *
+     * @return false if there is no such card of this owner
+     */
+    @Modifying
+    @Query("DELETE FROM CASH_CARD WHERE ID = :id AND OWNER = :owner")
+    boolean deleteByIdAndOwner(Long id, @ShardKey String owner);
+
+    @Query("SELECT VERSION FROM CASH_CARD WHERE ID = :id AND OWNER = :owner")
+    Long findVersionByIdAndOwner(Long id, @ShardKey String owner);
+
+    @Query("""
+            SELECT COUNT(*) AS CARD_COUNT, COALESCE(SUM(AMOUNT), 0) AS TOTAL,
+                   MIN(AMOUNT) AS MIN_AMOUNT, MAX(AMOUNT) AS MAX_AMOUNT
+            FROM CASH_CARD WHERE OWNER = :owner""")
+    CashCardSummary summarizeByOwner(@ShardKey String owner);
+
+    /**
+     * Same as {@link #summarizeByOwner} from the running totals and two index seeks, independent of the number
+     * of cards; only valid with {@code cardcashian.summary.running-totals=true}.
+     *
+     * @return null if the owner has no cards
+     */
+    @Query("""
+            SELECT T.CARD_COUNT, T.TOTAL,
+                   (SELECT AMOUNT FROM CASH_CARD WHERE OWNER = :owner ORDER BY AMOUNT LIMIT 1) AS MIN_AMOUNT,
+                   (SELECT AMOUNT FROM CASH_CARD WHERE OWNER = :owner ORDER BY AMOUNT DESC LIMIT 1) AS MAX_AMOUNT
+            FROM CASH_CARD_OWNER_TOTAL T WHERE T.OWNER = :owner AND T.CARD_COUNT > 0""")
+    CashCardSummary findRunningSummaryByOwner(@ShardKey String owner);
 
-    CashCard findByIdAndOwner(Long id, String owner);
-    Page<CashCard> findByOwner(String owner, PageRequest pageRequest);
-    boolean existsByIdAndOwner(Long id, String owner);
+    @Query("SELECT ID FROM CASH_CARD WHERE OWNER = :owner AND ID IN (:ids)")
+    List<Long> findIdsByOwnerAndIdIn(@ShardKey String owner, Collection<Long> ids);
 }
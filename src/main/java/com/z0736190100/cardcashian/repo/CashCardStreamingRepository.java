@@ -0,0 +1,16 @@
+package com.z0736190100.cardcashian.repo;
+
+import com.z0736190100.cardcashian.model.CashCard;
+
+import java.util.function.Consumer;
+
+/**
+ * Forward-only reads of {@link CashCard}s that never hold more than one fetch of rows in memory.
+ */
+public interface CashCardStreamingRepository {
+
+    /**
+     * Hands every card of the owner, ordered by id, to the action while the result set is being read.
+     */
+    void streamByOwner(@ShardKey String owner, Consumer<CashCard> action);
+}
@@ -0,0 +1,40 @@
+package com.z0736190100.cardcashian.repo;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.function.Consumer;
+
+class CashCardStreamingRepositoryImpl implements CashCardStreamingRepository {
+
+    private static final String SELECT_BY_OWNER = "SELECT ID, AMOUNT, OWNER, VERSION FROM CASH_CARD WHERE OWNER = ? ORDER BY ID";
+    private static final int FETCH_SIZE = 1000;
+
+    private final NamedParameterJdbcOperations jdbc;
+
+    CashCardStreamingRepositoryImpl(NamedParameterJdbcOperations jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    // some drivers (e.g. PostgreSQL) only honour the fetch size inside a transaction; H2 ignores it unless the url
+    // sets LAZY_QUERY_EXECUTION=1
+    @Override
+    @Transactional(readOnly = true)
+    public void streamByOwner(String owner, Consumer<CashCard> action) {
+        jdbc.getJdbcOperations().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_BY_OWNER,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setString(1, owner);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> action.accept(new CashCard(
+                resultSet.getLong("ID"),
+                resultSet.getLong("AMOUNT"),
+                resultSet.getString("OWNER"),
+                resultSet.getLong("VERSION"))));
+    }
+}
@@ -0,0 +1,11 @@
+package com.z0736190100.cardcashian.repo;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @param runningTotals keep a per-owner card count and total in {@code CASH_CARD_OWNER_TOTAL} up to date on
+ *                      every write, so the summary no longer aggregates all of an owner's cards
+ */
+@ConfigurationProperties("cardcashian.summary")
+public record CashCardSummaryProperties(boolean runningTotals) {
+}
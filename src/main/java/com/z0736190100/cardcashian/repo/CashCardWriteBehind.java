@@ -0,0 +1,195 @@
+package com.z0736190100.cardcashian.repo;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Write-behind for single-card creates: callers queue their card and wait for its id while one writer thread
+ * inserts whatever is queued with {@link CashCardBatchRepository#insertAll}, as soon as {@code batchSize} cards
+ * are there or the oldest one has waited {@code maxDelay}. Under load many requests share one round trip and
+ * one commit; when idle a create waits at most {@code maxDelay} longer than a direct INSERT. A batch is committed
+ * or rolled back as a whole, in the sharded mode shard by shard: a failing shard only fails the creates it holds.
+ * <p>
+ * The queue is bounded: a create that does not fit is rejected right away instead of piling up, and a create
+ * that is not written within {@code timeout} fails instead of waiting for a stuck writer forever. On shutdown
+ * new creates are rejected and everything already queued is written before the database goes away.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cardcashian.write-behind", name = "enabled", havingValue = "true")
+public class CashCardWriteBehind implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(CashCardWriteBehind.class);
+
+    private final Function<List<CashCard>, List<CashCard>> insertAll;
+    private final ToIntFunction<CashCard> shardOf;
+    private final CashCardWriteBehindProperties properties;
+    private final BlockingQueue<PendingInsert> queue;
+    private final DistributionSummary batchSizes;
+    // a new one per start(): a lifecycle may be stopped and started again, a thread only runs once
+    private Thread writer;
+    private volatile boolean running;
+
+    @Autowired
+    CashCardWriteBehind(CashCardRepository cashCardRepository, ObjectProvider<ShardRoutingDataSource> shards,
+                        CashCardWriteBehindProperties properties, MeterRegistry meterRegistry) {
+        this(cashCardRepository::insertAll, shardOf(shards.getIfAvailable()), properties, meterRegistry);
+    }
+
+    CashCardWriteBehind(Function<List<CashCard>, List<CashCard>> insertAll, CashCardWriteBehindProperties properties,
+                        MeterRegistry meterRegistry) {
+        this(insertAll, cashCard -> 0, properties, meterRegistry);
+    }
+
+    CashCardWriteBehind(Function<List<CashCard>, List<CashCard>> insertAll, ToIntFunction<CashCard> shardOf,
+                        CashCardWriteBehindProperties properties, MeterRegistry meterRegistry) {
+        this.insertAll = insertAll;
+        this.shardOf = shardOf;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.queueCapacity());
+        Gauge.builder("cashcards.write.behind.queue", queue, BlockingQueue::size)
+                .description("CashCard creates waiting to be written")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("cashcards.write.behind.batch.size")
+                .description("Number of CashCards inserted per write-behind batch")
+                .baseUnit("cashcards")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the card for insertion.
+     *
+     * @return the inserted card, with its id, once its batch is committed; failed with a {@link TimeoutException}
+     * if that takes longer than {@code timeout}
+     * @throws RejectedExecutionException if the queue is full or the application is shutting down
+     */
+    public CompletableFuture<CashCard> insert(CashCard cashCard) {
+        PendingInsert pending = new PendingInsert(cashCard,
+                new CompletableFuture<CashCard>().orTimeout(properties.timeout().toNanos(), TimeUnit.NANOSECONDS));
+        if (!running || !queue.offer(pending)) {
+            throw new RejectedExecutionException("CashCard write-behind queue is full or stopped");
+        }
+        return pending.inserted();
+    }
+
+    private void writeBatches() {
+        List<PendingInsert> batch = new ArrayList<>(properties.batchSize());
+        long maxDelayNanos = properties.maxDelay().toNanos();
+        try {
+            while (running || !queue.isEmpty()) {
+                PendingInsert first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < properties.batchSize()) {
+                    if (queue.drainTo(batch, properties.batchSize() - batch.size()) > 0) {
+                        continue;
+                    }
+                    PendingInsert next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(List<PendingInsert> queued) {
+        // the creates that timed out while queued have been answered already, don't write them behind their back
+        Map<Integer, List<PendingInsert>> batchesByShard = new LinkedHashMap<>();
+        for (PendingInsert pending : queued) {
+            if (!pending.inserted().isDone()) {
+                batchesByShard.computeIfAbsent(shardOf.applyAsInt(pending.cashCard()), shard -> new ArrayList<>())
+                        .add(pending);
+            }
+        }
+        // one transaction each: the result of every create is that of its own shard's commit
+        batchesByShard.values().forEach(this::writeInOneTransaction);
+    }
+
+    private void writeInOneTransaction(List<PendingInsert> batch) {
+        try {
+            List<CashCard> inserted = insertAll.apply(batch.stream().map(PendingInsert::cashCard).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).inserted().complete(inserted.get(i));
+            }
+            batchSizes.record(batch.size());
+        } catch (RuntimeException e) {
+            log.warn("Failed to insert a batch of {} CashCards", batch.size(), e);
+            batch.forEach(pending -> pending.inserted().completeExceptionally(e));
+        }
+    }
+
+    private static ToIntFunction<CashCard> shardOf(ShardRoutingDataSource shards) {
+        // a card without an owner is not routed here but rejected by insertAll, with its batch
+        return shards == null ? cashCard -> 0
+                : cashCard -> cashCard.owner() == null ? 0 : shards.shardOf(cashCard.owner());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::writeBatches, "cashcard-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            // the writer exits once the queue is empty
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // creates that got in between the writer's last look at the queue and its exit
+        List<PendingInsert> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            write(rest);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // stopped after the web server has stopped taking requests (and finished the ones in flight), started before
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private record PendingInsert(CashCard cashCard, CompletableFuture<CashCard> inserted) {
+    }
+}
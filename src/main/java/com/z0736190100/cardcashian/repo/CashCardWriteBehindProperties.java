@@ -0,0 +1,24 @@
+package com.z0736190100.cardcashian.repo;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the write-behind pipeline of {@code POST /cashcards}.
+ *
+ * @param enabled       queue single-card creates and insert them in JDBC batches instead of one INSERT each
+ * @param queueCapacity creates waiting to be written at most; beyond that {@code POST /cashcards} answers 503
+ * @param batchSize     largest batch written at once, a full batch is written right away
+ * @param maxDelay      longest a create waits for its batch to fill up
+ * @param timeout       longest a create waits for its batch to be written, {@code POST /cashcards} answers 503 after
+ *                      that (e.g. while the database or the writer is stuck)
+ */
+@ConfigurationProperties("cardcashian.write-behind")
+public record CashCardWriteBehindProperties(boolean enabled,
+                                            @DefaultValue("10000") int queueCapacity,
+                                            @DefaultValue("500") int batchSize,
+                                            @DefaultValue("5ms") Duration maxDelay,
+                                            @DefaultValue("5s") Duration timeout) {
+}
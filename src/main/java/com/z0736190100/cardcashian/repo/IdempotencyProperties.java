@@ -0,0 +1,24 @@
+package com.z0736190100.cardcashian.repo;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@code Idempotency-Key} handling of {@code POST /cashcards}.
+ *
+ * @param store   {@code memory} (per process, lost on restart) or {@code jdbc} (table
+ *                {@code CASH_CARD_IDEMPOTENCY_KEY}, shared by all instances on the database and kept across restarts)
+ * @param ttl     how long a key is remembered; a retry after that creates a new card
+ * @param maxKeys upper bound of keys kept by the {@code memory} store, oldest ones are evicted first
+ */
+@ConfigurationProperties("cardcashian.idempotency")
+public record IdempotencyProperties(@DefaultValue("memory") Store store,
+                                    @DefaultValue("24h") Duration ttl,
+                                    @DefaultValue("100000") long maxKeys) {
+
+    public enum Store {
+        MEMORY, JDBC
+    }
+}
@@ -0,0 +1,26 @@
+package com.z0736190100.cardcashian.repo;
+
+import java.util.function.Supplier;
+
+/**
+ * Remembers which card an owner's {@code Idempotency-Key} created, so a retried create returns that card instead
+ * of writing a second one. Keys are scoped by owner: two owners can use the same key independently.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Runs {@code create} (returning the new card's id) unless the owner already used the key within the TTL.
+     * Concurrent calls with the same key create at most one card, all of them return its id.
+     *
+     * @throws org.springframework.dao.DuplicateKeyException if the key kept being taken and freed again
+     *         concurrently, then no card was created
+     */
+    Outcome createOnce(String owner, String key, Supplier<Long> create);
+
+    /**
+     * @param cardId   id of the card created for the key
+     * @param replayed whether the card was created by an earlier request, not by this call
+     */
+    record Outcome(Long cardId, boolean replayed) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.z0736190100.cardcashian.repo;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * {@link IdempotencyStore} in a bounded Caffeine map, evicted by age and size.
+ * <p>
+ * The first request of a key registers a pending future and creates the card; concurrent ones with the same
+ * key wait for that future instead of creating their own. If the create fails the key is released again, so a
+ * retry is not answered with a card that never existed.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cardcashian.idempotency", name = "store", havingValue = "memory", matchIfMissing = true)
+class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final ConcurrentMap<String, CompletableFuture<Long>> cardIds;
+
+    InMemoryIdempotencyStore(IdempotencyProperties properties) {
+        this.cardIds = Caffeine.newBuilder()
+                .maximumSize(properties.maxKeys())
+                .expireAfterWrite(properties.ttl())
+                .<String, CompletableFuture<Long>>build()
+                .asMap();
+    }
+
+    @Override
+    public Outcome createOnce(String owner, String key, Supplier<Long> create) {
+        String ownerKey = owner + '\0' + key;
+        while (true) {
+            CompletableFuture<Long> pending = new CompletableFuture<>();
+            CompletableFuture<Long> existing = cardIds.putIfAbsent(ownerKey, pending);
+            if (existing == null) {
+                try {
+                    Long cardId = create.get();
+                    pending.complete(cardId);
+                    return new Outcome(cardId, false);
+                } catch (RuntimeException e) {
+                    cardIds.remove(ownerKey, pending);
+                    pending.completeExceptionally(e);
+                    throw e;
+                }
+            }
+            try {
+                return new Outcome(existing.join(), true);
+            } catch (CompletionException e) {
+                // the first attempt failed and released the key, try to be the one creating the card
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.z0736190100.cardcashian.repo;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * {@link IdempotencyStore} in the {@code CASH_CARD_IDEMPOTENCY_KEY} table.
+ * <p>
+ * A first request costs one primary key lookup, then the card and its key are inserted in one transaction. When
+ * a concurrent request with the same key commits first, the key's primary key rejects the insert, the transaction
+ * (card included) is rolled back and the other request's card is returned instead; a key that is only expired is
+ * deleted and the insert retried, a few times at most before the duplicate key is thrown. Expired keys are deleted in
+ * bulk at most once per {@link #PURGE_INTERVAL}, by whichever create comes along, so the table stays bounded by
+ * the number of creates within the TTL.
+ * <p>
+ * Sharded, an owner's keys are kept on the owner's shard, in the same transaction as the card.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cardcashian.idempotency", name = "store", havingValue = "jdbc")
+class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final Duration PURGE_INTERVAL = Duration.ofMinutes(1);
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final AtomicLong nextPurge = new AtomicLong();
+    // null unless sharded
+    private final ShardRoutingDataSource shards;
+
+    JdbcIdempotencyStore(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                         IdempotencyProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.ttl = properties.ttl();
+        this.shards = jdbcTemplate.getDataSource() instanceof ShardRoutingDataSource sharded ? sharded : null;
+    }
+
+    @Override
+    public Outcome createOnce(String owner, String key, Supplier<Long> create) {
+        Instant now = Instant.now();
+        Timestamp expiredBefore = Timestamp.from(now.minus(ttl));
+        purgeIfDue(now, expiredBefore);
+
+        return shards == null
+                ? createOnce(owner, key, create, now, expiredBefore)
+                : shards.onShardOf(owner, () -> createOnce(owner, key, create, now, expiredBefore));
+    }
+
+    private Outcome createOnce(String owner, String key, Supplier<Long> create, Instant now, Timestamp expiredBefore) {
+        for (int attempt = 1; ; attempt++) {
+            Long existing = findCardId(owner, key, expiredBefore);
+            if (existing != null) {
+                return new Outcome(existing, true);
+            }
+            try {
+                return insert(owner, key, create, now);
+            } catch (DuplicateKeyException e) {
+                // a live winner is found by the next lookup; a racing expired insert or purge can keep both away
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+            }
+            // the key is expired but not purged yet, it must not block its reuse
+            jdbcTemplate.update("""
+                    DELETE FROM CASH_CARD_IDEMPOTENCY_KEY
+                    WHERE OWNER = ? AND IDEMPOTENCY_KEY = ? AND CREATED_AT < ?""", owner, key, expiredBefore);
+        }
+    }
+
+    private Outcome insert(String owner, String key, Supplier<Long> create, Instant now) {
+        return transactionTemplate.execute(status -> {
+            Long cardId = create.get();
+            jdbcTemplate.update("""
+                    INSERT INTO CASH_CARD_IDEMPOTENCY_KEY (OWNER, IDEMPOTENCY_KEY, CASH_CARD_ID, CREATED_AT)
+                    VALUES (?, ?, ?, ?)""", owner, key, cardId, Timestamp.from(now));
+            return new Outcome(cardId, false);
+        });
+    }
+
+    private Long findCardId(String owner, String key, Timestamp expiredBefore) {
+        List<Long> cardIds = jdbcTemplate.queryForList("""
+                SELECT CASH_CARD_ID FROM CASH_CARD_IDEMPOTENCY_KEY
+                WHERE OWNER = ? AND IDEMPOTENCY_KEY = ? AND CREATED_AT >= ?""", Long.class, owner, key, expiredBefore);
+        return cardIds.isEmpty() ? null : cardIds.get(0);
+    }
+
+    private void purgeIfDue(Instant now, Timestamp expiredBefore) {
+        long due = nextPurge.get();
+        if (now.toEpochMilli() >= due && nextPurge.compareAndSet(due, now.plus(PURGE_INTERVAL).toEpochMilli())) {
+            if (shards == null) {
+                purge(expiredBefore);
+            } else {
+                for (int shard = 0; shard < shards.shardCount(); shard++) {
+                    shards.onShard(shard, () -> purge(expiredBefore));
+                }
+            }
+        }
+    }
+
+    private int purge(Timestamp expiredBefore) {
+        return jdbcTemplate.update("DELETE FROM CASH_CARD_IDEMPOTENCY_KEY WHERE CREATED_AT < ?", expiredBefore);
+    }
+}
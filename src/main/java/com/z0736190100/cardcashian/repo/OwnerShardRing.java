@@ -0,0 +1,71 @@
+package com.z0736190100.cardcashian.repo;
+
+import java.util.Arrays;
+
+/**
+ * Consistent hash ring from owners to shards.
+ * <p>
+ * Every shard is placed on the ring at {@code virtualNodes} points; an owner belongs to the shard of the first
+ * point at or after the owner's hash. Adding a shard only takes over the owners between its new points and the
+ * points before them, about {@code 1 / shards} of all owners, and every one of them moves to the new shard: the
+ * other owners keep their shard.
+ */
+public final class OwnerShardRing {
+
+    private final int shardCount;
+    // sorted, shards[i] owns the hashes up to points[i]
+    private final long[] points;
+    private final int[] shards;
+
+    public OwnerShardRing(int shardCount, int virtualNodes) {
+        if (shardCount < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("Need at least one shard and one virtual node per shard");
+        }
+        this.shardCount = shardCount;
+        long[][] ring = new long[shardCount * virtualNodes][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                // depends on the shard's number only: the points of existing shards stay when shards are added
+                ring[shard * virtualNodes + node] = new long[]{hash("shard-" + shard + "#" + node), shard};
+            }
+        }
+        Arrays.sort(ring, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[ring.length];
+        this.shards = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = ring[i][0];
+            shards[i] = (int) ring[i][1];
+        }
+    }
+
+    public int shardOf(String owner) {
+        int index = Arrays.binarySearch(points, hash(owner));
+        if (index < 0) {
+            // insertion point, wrapping around past the last point
+            index = -index - 1;
+            if (index == points.length) {
+                index = 0;
+            }
+        }
+        return shards[index];
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    // FNV-1a over the chars, then the MurmurHash3 finalizer to spread similar names over the whole ring
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,64 @@
+package com.z0736190100.cardcashian.repo;
+
+import org.h2.tools.TriggerAdapter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * H2 row trigger on {@code CASH_CARD} maintaining {@code CASH_CARD_OWNER_TOTAL} in the writing transaction.
+ * Being a trigger it sees every write path alike: repository saves, JDBC batches and in-place adjustments.
+ */
+public class OwnerTotalTrigger extends TriggerAdapter {
+
+    private static final String DUPLICATE_KEY = "23505";
+
+    private static final String UPDATE = """
+            UPDATE CASH_CARD_OWNER_TOTAL SET CARD_COUNT = CARD_COUNT + ?, TOTAL = TOTAL + ? WHERE OWNER = ?""";
+    private static final String INSERT = """
+            INSERT INTO CASH_CARD_OWNER_TOTAL (CARD_COUNT, TOTAL, OWNER) VALUES (?, ?, ?)""";
+
+    @Override
+    public void fire(Connection connection, ResultSet oldRow, ResultSet newRow) throws SQLException {
+        if (oldRow != null && newRow != null && oldRow.getString("OWNER").equals(newRow.getString("OWNER"))) {
+            long difference = newRow.getLong("AMOUNT") - oldRow.getLong("AMOUNT");
+            if (difference != 0) {
+                add(connection, newRow.getString("OWNER"), 0, difference);
+            }
+            return;
+        }
+        if (oldRow != null) {
+            add(connection, oldRow.getString("OWNER"), -1, -oldRow.getLong("AMOUNT"));
+        }
+        if (newRow != null) {
+            add(connection, newRow.getString("OWNER"), 1, newRow.getLong("AMOUNT"));
+        }
+    }
+
+    private static void add(Connection connection, String owner, long cardCount, long total) throws SQLException {
+        if (execute(connection, UPDATE, owner, cardCount, total) > 0) {
+            return;
+        }
+        try {
+            execute(connection, INSERT, owner, cardCount, total);
+        } catch (SQLException e) {
+            if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                throw e;
+            }
+            // a concurrent first card of the same owner created the row in the meantime
+            execute(connection, UPDATE, owner, cardCount, total);
+        }
+    }
+
+    private static int execute(Connection connection, String sql, String owner, long cardCount, long total)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, cardCount);
+            statement.setLong(2, total);
+            statement.setString(3, owner);
+            return statement.executeUpdate();
+        }
+    }
+}
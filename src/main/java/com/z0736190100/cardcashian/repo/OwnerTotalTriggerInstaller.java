@@ -0,0 +1,50 @@
+package com.z0736190100.cardcashian.repo;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Installs {@link OwnerTotalTrigger} once the schema (and any data) is in place, after recomputing the totals of
+ * the cards that already exist. Sharded, every shard gets the trigger and keeps the totals of its owners.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cardcashian.summary", name = "running-totals", havingValue = "true")
+class OwnerTotalTriggerInstaller implements InitializingBean {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    OwnerTotalTriggerInstaller(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (jdbcTemplate.getDataSource() instanceof ShardRoutingDataSource shards) {
+            for (int shard = 0; shard < shards.shardCount(); shard++) {
+                shards.onShard(shard, () -> {
+                    install();
+                    return null;
+                });
+            }
+        } else {
+            install();
+        }
+    }
+
+    private void install() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM CASH_CARD_OWNER_TOTAL");
+            jdbcTemplate.update("""
+                    INSERT INTO CASH_CARD_OWNER_TOTAL (OWNER, CARD_COUNT, TOTAL)
+                    SELECT OWNER, COUNT(*), SUM(AMOUNT) FROM CASH_CARD GROUP BY OWNER""");
+            jdbcTemplate.execute("CREATE TRIGGER IF NOT EXISTS CASH_CARD_OWNER_TOTAL_TRIGGER"
+                    + " AFTER INSERT, UPDATE, DELETE ON CASH_CARD FOR EACH ROW"
+                    + " CALL '" + OwnerTotalTrigger.class.getName() + "'");
+        });
+    }
+}
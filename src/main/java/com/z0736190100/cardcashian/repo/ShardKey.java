@@ -0,0 +1,17 @@
+package com.z0736190100.cardcashian.repo;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the owner parameter of a {@link CashCardRepository} method: in the sharded mode the call goes to the
+ * owner's shard.
+ */
+@Documented
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+}
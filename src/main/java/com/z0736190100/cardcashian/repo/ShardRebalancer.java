@@ -0,0 +1,140 @@
+package com.z0736190100.cardcashian.repo;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Moves the data of every owner that is not on its shard, i.e. of the owners the consistent hash ring hands to
+ * shards appended to {@code cardcashian.sharding.shards}.
+ * <p>
+ * An owner's cards (with their ids and versions: ids are unique over all shards) and idempotency keys are moved in
+ * chunks, each one copied to the new shard (replacing whatever an interrupted run copied before) and then deleted
+ * from the old one, in a transaction per shard. A run that fails can simply be repeated. Writes must be stopped
+ * while it runs: a card written to the old shard in between is not moved. Started with
+ * {@code cardcashian.sharding.rebalance-on-startup=true} it runs before the application serves requests.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cardcashian.sharding", name = "enabled", havingValue = "true")
+public class ShardRebalancer implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final RowMapper<CashCard> CASH_CARD = (resultSet, row) -> new CashCard(
+            resultSet.getLong("ID"),
+            resultSet.getLong("AMOUNT"),
+            resultSet.getString("OWNER"),
+            resultSet.getLong("VERSION"));
+    private static final RowMapper<IdempotencyKey> IDEMPOTENCY_KEY = (resultSet, row) -> new IdempotencyKey(
+            resultSet.getString("IDEMPOTENCY_KEY"),
+            resultSet.getLong("CASH_CARD_ID"),
+            resultSet.getTimestamp("CREATED_AT"));
+
+    private final ShardRoutingDataSource shards;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean onStartup;
+
+    ShardRebalancer(ShardRoutingDataSource shards, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                    ShardingProperties properties) {
+        this.shards = shards;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.onStartup = properties.rebalanceOnStartup();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (onStartup) {
+            Result result = rebalance();
+            log.info("Moved {} cards of {} owners to their shards", result.cashCards(), result.owners());
+        }
+    }
+
+    public Result rebalance() {
+        int owners = 0;
+        long cashCards = 0;
+        for (int source = 0; source < shards.shardCount(); source++) {
+            // keys too: an interrupted run may have moved all of an owner's cards but not the keys
+            List<String> ownersOnShard = shards.onShard(source, () -> jdbcTemplate.queryForList(
+                    "SELECT OWNER FROM CASH_CARD UNION SELECT OWNER FROM CASH_CARD_IDEMPOTENCY_KEY", String.class));
+            for (String owner : ownersOnShard) {
+                int target = shards.shardOf(owner);
+                if (target != source) {
+                    cashCards += move(owner, source, target);
+                    owners++;
+                }
+            }
+        }
+        return new Result(owners, cashCards);
+    }
+
+    private long move(String owner, int source, int target) {
+        long moved = 0;
+        while (true) {
+            // moved chunks are deleted, the next chunk is always the first one left
+            List<CashCard> chunk = shards.onShard(source, () -> jdbcTemplate.query(
+                    "SELECT ID, AMOUNT, OWNER, VERSION FROM CASH_CARD WHERE OWNER = ? ORDER BY ID LIMIT ?",
+                    CASH_CARD, owner, CHUNK_SIZE));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            inTransactionOn(target, () -> {
+                List<Object[]> ids = chunk.stream().map(cashCard -> new Object[]{cashCard.id()}).toList();
+                jdbcTemplate.batchUpdate("DELETE FROM CASH_CARD WHERE ID = ?", ids);
+                jdbcTemplate.batchUpdate("INSERT INTO CASH_CARD (ID, AMOUNT, OWNER, VERSION) VALUES (?, ?, ?, ?)",
+                        chunk.stream().map(cashCard -> new Object[]{
+                                cashCard.id(), cashCard.amount(), cashCard.owner(), cashCard.version()}).toList());
+            });
+            inTransactionOn(source, () -> jdbcTemplate.batchUpdate("DELETE FROM CASH_CARD WHERE ID = ? AND OWNER = ?",
+                    chunk.stream().map(cashCard -> new Object[]{cashCard.id(), owner}).toList()));
+            moved += chunk.size();
+        }
+
+        List<IdempotencyKey> keys = shards.onShard(source, () -> jdbcTemplate.query(
+                "SELECT IDEMPOTENCY_KEY, CASH_CARD_ID, CREATED_AT FROM CASH_CARD_IDEMPOTENCY_KEY WHERE OWNER = ?",
+                IDEMPOTENCY_KEY, owner));
+        if (!keys.isEmpty()) {
+            inTransactionOn(target, () -> {
+                jdbcTemplate.batchUpdate(
+                        "DELETE FROM CASH_CARD_IDEMPOTENCY_KEY WHERE OWNER = ? AND IDEMPOTENCY_KEY = ?",
+                        keys.stream().map(key -> new Object[]{owner, key.key()}).toList());
+                jdbcTemplate.batchUpdate("""
+                                INSERT INTO CASH_CARD_IDEMPOTENCY_KEY (OWNER, IDEMPOTENCY_KEY, CASH_CARD_ID, CREATED_AT)
+                                VALUES (?, ?, ?, ?)""",
+                        keys.stream().map(key -> new Object[]{owner, key.key(), key.cashCardId(), key.createdAt()})
+                                .toList());
+            });
+            inTransactionOn(source, () ->
+                    jdbcTemplate.update("DELETE FROM CASH_CARD_IDEMPOTENCY_KEY WHERE OWNER = ?", owner));
+        }
+        return moved;
+    }
+
+    private void inTransactionOn(int shard, Runnable action) {
+        shards.onShard(shard, () -> {
+            transactionTemplate.executeWithoutResult(status -> action.run());
+            return null;
+        });
+    }
+
+    /**
+     * @param owners    owners whose data was moved
+     * @param cashCards cards moved
+     */
+    public record Result(int owners, long cashCards) {
+    }
+
+    private record IdempotencyKey(String key, long cashCardId, Timestamp createdAt) {
+    }
+}
@@ -0,0 +1,132 @@
+package com.z0736190100.cardcashian.repo;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The {@link DataSource} of the sharded mode: hands out connections of the shard selected on the current thread.
+ * <p>
+ * {@link CashCardRepository} selects the shard of the owner (or card) each call is about. Everything else that
+ * reads or writes owner data selects it with {@link #onShardOf}, around any transaction it starts: a connection
+ * is taken when the transaction begins. Without a selected shard there is no connection at all, so a query that
+ * is not scoped to an owner fails instead of reading one shard only.
+ * <p>
+ * Ids are unique over all shards and encode the shard that generated them: shard {@code n} numbers its cards
+ * {@code MAX_SHARDS + n}, {@code 2 * MAX_SHARDS + n}, ... (see {@link #firstId} and {@link #shardOfId}).
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    public static final int MAX_SHARDS = 1024;
+
+    private static final ThreadLocal<Integer> selected = new ThreadLocal<>();
+
+    private final List<DataSource> shards;
+    private final OwnerShardRing ring;
+
+    public ShardRoutingDataSource(List<? extends DataSource> shards, int virtualNodes) {
+        this.shards = List.copyOf(shards);
+        this.ring = new OwnerShardRing(shards.size(), virtualNodes);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public DataSource shard(int shard) {
+        return shards.get(shard);
+    }
+
+    public int shardOf(String owner) {
+        return ring.shardOf(owner);
+    }
+
+    /**
+     * The shard that generated the id. Not necessarily where the card is: a card moved by {@link ShardRebalancer}
+     * keeps its id, so cards are looked up by their owner's shard.
+     */
+    public static int shardOfId(long id) {
+        return (int) (id % MAX_SHARDS);
+    }
+
+    /**
+     * Start of the {@code CASH_CARD} identity of the shard, which is incremented by {@link #MAX_SHARDS}.
+     */
+    public static long firstId(int shard) {
+        return MAX_SHARDS + shard;
+    }
+
+    public <T> T onShardOf(String owner, Supplier<T> action) {
+        return onShard(shardOf(owner), action);
+    }
+
+    public <T> T onShard(int shard, Supplier<T> action) {
+        Integer previous = select(shard);
+        try {
+            return action.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Selects the shard for the current thread.
+     *
+     * @return the shard selected before, to {@link #restore}
+     */
+    static Integer select(int shard) {
+        Integer previous = selected.get();
+        // a transaction holds on to the connection of the shard it started on
+        if (previous != null && previous != shard) {
+            throw new IllegalStateException("Shard " + previous + " is selected on this thread, cannot switch to "
+                    + shard + " before leaving it");
+        }
+        selected.set(shard);
+        return previous;
+    }
+
+    static void restore(Integer previous) {
+        if (previous == null) {
+            selected.remove();
+        } else {
+            selected.set(previous);
+        }
+    }
+
+    static boolean isSelected() {
+        return selected.get() != null;
+    }
+
+    /**
+     * Closes the shards' pools.
+     */
+    @Override
+    public void close() throws Exception {
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = selected.get();
+        if (shard == null) {
+            throw new IllegalStateException("No shard selected: CASH_CARD data is sharded by owner, go through "
+                    + "CashCardRepository or ShardRoutingDataSource.onShardOf");
+        }
+        return shard;
+    }
+}
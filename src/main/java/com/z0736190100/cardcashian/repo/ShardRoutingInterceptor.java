@@ -0,0 +1,136 @@
+package com.z0736190100.cardcashian.repo;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Selects the shard of every {@link CashCardRepository} call in the sharded mode, before the repository's own
+ * transaction (if any) takes a connection. The shard is that of
+ * <ol>
+ *     <li>the {@link ShardKey} owner parameter,</li>
+ *     <li>else the owner of a {@link CashCard} argument ({@code save}, {@code delete}),</li>
+ *     <li>else the owners of a list of cards ({@code insertAll}, {@code updateAmounts}, {@code saveAll}): a list
+ *     spanning several shards is split, each part written on its shard, and the per-card results put back in
+ *     the order of the list.</li>
+ * </ol>
+ * Other calls ({@code findAll}, {@code count}, ...) are not scoped to an owner and only work on a shard the caller
+ * selected. That includes {@code findById}, {@code existsById} and {@code deleteById}: the id only tells where the
+ * card was created, and {@link ShardRebalancer} moves cards without changing their ids.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cardcashian.sharding", name = "enabled", havingValue = "true")
+class ShardRoutingInterceptor implements MethodInterceptor, BeanPostProcessor {
+
+    private final ObjectProvider<ShardRoutingDataSource> dataSource;
+
+    ShardRoutingInterceptor(ObjectProvider<ShardRoutingDataSource> dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+            factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                    (proxyFactory, repository) -> {
+                        if (CashCardRepository.class.equals(repository.getRepositoryInterface())) {
+                            // outermost: ahead of the transaction interceptor
+                            proxyFactory.addAdvice(0, this);
+                        }
+                    }));
+        }
+        return bean;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        Object[] arguments = invocation.getArguments();
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] instanceof String owner && isShardKey(parameterAnnotations[i])) {
+                return proceedOn(shards().shardOf(owner), invocation);
+            }
+        }
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] instanceof CashCard cashCard) {
+                return proceedOn(shards().shardOf(cashCard.owner()), invocation);
+            }
+            if (arguments[i] instanceof List<?> list && !list.isEmpty() && list.get(0) instanceof CashCard) {
+                return proceedPerShard(invocation, i, list);
+            }
+        }
+        if (ShardRoutingDataSource.isSelected()) {
+            return invocation.proceed();
+        }
+        throw new IllegalStateException("CashCardRepository." + method.getName()
+                + " is not scoped to an owner, select a shard for it with ShardRoutingDataSource.onShard");
+    }
+
+    private Object proceedPerShard(MethodInvocation invocation, int argument, List<?> cashCards) throws Throwable {
+        Map<Integer, List<Integer>> positionsByShard = new LinkedHashMap<>();
+        for (int i = 0; i < cashCards.size(); i++) {
+            int shard = shards().shardOf(((CashCard) cashCards.get(i)).owner());
+            positionsByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(i);
+        }
+        if (positionsByShard.size() == 1) {
+            return proceedOn(positionsByShard.keySet().iterator().next(), invocation);
+        }
+
+        Class<?> returnType = invocation.getMethod().getReturnType();
+        Object[] merged = new Object[cashCards.size()];
+        int[] mergedCounts = new int[cashCards.size()];
+        for (Map.Entry<Integer, List<Integer>> shard : positionsByShard.entrySet()) {
+            List<Integer> positions = shard.getValue();
+            Object[] arguments = invocation.getArguments().clone();
+            arguments[argument] = positions.stream().map(cashCards::get).toList();
+            Object result = proceedOn(shard.getKey(),
+                    ((ProxyMethodInvocation) invocation).invocableClone(arguments));
+            for (int i = 0; i < positions.size(); i++) {
+                if (result instanceof List<?> results) {
+                    merged[positions.get(i)] = results.get(i);
+                } else if (result instanceof int[] counts) {
+                    mergedCounts[positions.get(i)] = counts[i];
+                } else if (returnType != void.class) {
+                    throw new IllegalStateException(invocation.getMethod().getName()
+                            + " cannot be split over shards, its result is not one per card");
+                }
+            }
+        }
+        if (returnType == int[].class) {
+            return mergedCounts;
+        }
+        return returnType == void.class ? null : Arrays.asList(merged);
+    }
+
+    private static Object proceedOn(int shard, MethodInvocation invocation) throws Throwable {
+        Integer previous = ShardRoutingDataSource.select(shard);
+        try {
+            return invocation.proceed();
+        } finally {
+            ShardRoutingDataSource.restore(previous);
+        }
+    }
+
+    private static boolean isShardKey(Annotation[] annotations) {
+        return Arrays.stream(annotations).anyMatch(annotation -> annotation instanceof ShardKey);
+    }
+
+    private ShardRoutingDataSource shards() {
+        return dataSource.getObject();
+    }
+}
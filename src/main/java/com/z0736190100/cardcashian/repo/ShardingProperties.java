@@ -0,0 +1,37 @@
+package com.z0736190100.cardcashian.repo;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Settings of the sharded mode: {@code CASH_CARD} split over several databases by owner.
+ *
+ * @param enabled            route every owner to one of the {@code shards} instead of using {@code spring.datasource}
+ * @param shards             the databases, in a fixed order: a shard's position is its number, encoded in every id
+ *                           it generates, so shards may only ever be appended
+ * @param virtualNodes       points per shard on the consistent hash ring; more points spread owners more evenly
+ * @param rebalanceOnStartup move the cards of owners that hash to another shard (after shards were added) before
+ *                           the application starts serving requests
+ */
+@ConfigurationProperties("cardcashian.sharding")
+public record ShardingProperties(boolean enabled,
+                                 List<Shard> shards,
+                                 @DefaultValue("128") int virtualNodes,
+                                 boolean rebalanceOnStartup) {
+
+    public ShardingProperties {
+        shards = shards == null ? List.of() : List.copyOf(shards);
+        if (enabled && (shards.isEmpty() || shards.size() > ShardRoutingDataSource.MAX_SHARDS)) {
+            throw new IllegalArgumentException("Sharding needs 1 to " + ShardRoutingDataSource.MAX_SHARDS
+                    + " cardcashian.sharding.shards, got " + shards.size());
+        }
+    }
+
+    /**
+     * Connection of one shard; the pool settings are those of {@code spring.datasource.hikari}.
+     */
+    public record Shard(String url, String username, String password) {
+    }
+}
@@ -0,0 +1,64 @@
+package com.z0736190100.cardcashian.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Request rate limits per authenticated user, enforced by {@link RateLimitFilter}.
+ *
+ * @param enabled    whether requests are rate limited at all
+ * @param maxOwners  upper bound of users whose buckets are tracked, least recently seen ones are evicted first
+ * @param idleTimeout a user's bucket is dropped after this long without requests (it would be full again anyway
+ *                   once idle for {@code burst / permitsPerSecond})
+ * @param roles      limits by role name (without {@code ROLE_} prefix), e.g. {@code CARD-OWNER}
+ * @param others     limit of users that have none of the {@code roles}
+ */
+@ConfigurationProperties("cardcashian.security.rate-limit")
+public record RateLimitProperties(@DefaultValue("true") boolean enabled,
+                                  @DefaultValue("100000") long maxOwners,
+                                  @DefaultValue("10m") Duration idleTimeout,
+                                  Map<String, Limit> roles,
+                                  @DefaultValue Limit others) {
+
+    public RateLimitProperties {
+        roles = roles == null ? Map.of() : Map.copyOf(roles);
+    }
+
+    /**
+     * The most generous limit among the user's roles, {@link #others} if none of them has one.
+     */
+    public Limit limitFor(Collection<? extends GrantedAuthority> authorities) {
+        Limit limit = null;
+        for (GrantedAuthority authority : authorities) {
+            String name = authority.getAuthority();
+            Limit roleLimit = name != null && name.startsWith("ROLE_") ? roles.get(name.substring(5)) : null;
+            if (roleLimit != null && (limit == null || roleLimit.permitsPerSecond() > limit.permitsPerSecond())) {
+                limit = roleLimit;
+            }
+        }
+        return limit != null ? limit : others;
+    }
+
+    /**
+     * A token bucket: refilled with {@code permitsPerSecond} tokens per second, holding at most {@code burst}.
+     */
+    public record Limit(@DefaultValue("10") double permitsPerSecond,
+                        @DefaultValue("20") int burst) {
+
+        public Limit {
+            if (permitsPerSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException(
+                        "Rate limit needs permitsPerSecond > 0 and burst >= 1, got " + permitsPerSecond + "/" + burst);
+            }
+        }
+
+        long intervalNanos() {
+            return Math.max(1, Math.round(1_000_000_000d / permitsPerSecond));
+        }
+    }
+}
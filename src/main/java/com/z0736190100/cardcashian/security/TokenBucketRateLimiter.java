@@ -0,0 +1,63 @@
+package com.z0736190100.cardcashian.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token buckets, one per key, in the "generic cell rate algorithm" form: instead of a token count and
+ * a refill timestamp, each bucket is a single {@link AtomicLong} holding the time at which it will be full again.
+ * Taking a token is one compare-and-set that moves that time forward by one refill interval, no background
+ * refilling and no locks; contention only exists between requests of the same key.
+ * <p>
+ * Buckets of keys not seen for the idle timeout are evicted (as is the least recently used one beyond the maximum
+ * number of keys), so memory stays bounded however many users show up.
+ */
+public class TokenBucketRateLimiter {
+
+    private final Cache<String, AtomicLong> fullAt;
+    private final LongSupplier nanoClock;
+
+    public TokenBucketRateLimiter(long maxKeys, Duration idleTimeout) {
+        this(maxKeys, idleTimeout, System::nanoTime);
+    }
+
+    TokenBucketRateLimiter(long maxKeys, Duration idleTimeout, LongSupplier nanoClock) {
+        this.fullAt = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleTimeout)
+                .build();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Takes a token from the key's bucket.
+     *
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next one is available
+     */
+    public long tryAcquire(String key, RateLimitProperties.Limit limit) {
+        long now = nanoClock.getAsLong();
+        // a new bucket is full
+        AtomicLong bucket = fullAt.get(key, k -> new AtomicLong(now));
+        long interval = limit.intervalNanos();
+        long capacity = interval * limit.burst();
+        while (true) {
+            long current = bucket.get();
+            long next = Math.max(current, now) + interval;
+            long wait = next - now - capacity;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public long trackedKeys() {
+        return fullAt.estimatedSize();
+    }
+}
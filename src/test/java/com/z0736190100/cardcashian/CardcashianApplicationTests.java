@@ -1,8 +1,12 @@
 package com.z0736190100.cardcashian;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
 import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.model.CashCardAdjustment;
 import net.minidev.json.JSONArray;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -10,14 +14,33 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -94,7 +117,7 @@ class CardcashianApplicationTests {
     @Test
     @DirtiesContext
     void shouldReturnCreatedOnCreateANewCashCard() {
-        CashCard newCashCard = new CashCard(null, 250.00, "sarah1");
+        CashCard newCashCard = new CashCard(null, 25000, "sarah1");
 
         ResponseEntity<Void> createResponse = restTemplate
                 .withBasicAuth("sarah1", "abc123")
@@ -103,10 +126,24 @@ class CardcashianApplicationTests {
         assertThat(createResponse.getStatusCode()).isEqualTo(HttpStatus.CREATED);
     }
 
+    @Test
+    void shouldRejectANewCashCardWithoutAnAmount() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        long cardCount = cardCountOf("sarah1", "abc123");
+
+        ResponseEntity<Void> createResponse = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForEntity(CASHCARDS_URL, new HttpEntity<>("{}", headers), Void.class);
+
+        assertThat(createResponse.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(cardCountOf("sarah1", "abc123")).isEqualTo(cardCount);
+    }
+
     @Test
     @DirtiesContext
     void shouldHaveLocationHeaderInResponseOnNewCashCardCreated() {
-        CashCard newCashCard = new CashCard(null, 250.00, "sarah1");
+        CashCard newCashCard = new CashCard(null, 25000, "sarah1");
 
         ResponseEntity<Void> createResponse = restTemplate
                 .withBasicAuth("sarah1", "abc123")
@@ -125,7 +162,7 @@ class CardcashianApplicationTests {
     @Test
     @DirtiesContext
     void shouldReturnOkOnLocationGetForCashCardCreated() {
-        CashCard newCashCard = new CashCard(null, 250.00, "sarah1");
+        CashCard newCashCard = new CashCard(null, 25000, "sarah1");
 
         ResponseEntity<Void> createResponse = restTemplate
                 .withBasicAuth("sarah1", "abc123")
@@ -138,6 +175,57 @@ class CardcashianApplicationTests {
         assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
 
+    @Test
+    @DirtiesContext
+    void shouldReplayACreateWithTheSameIdempotencyKey() {
+        long cardCount = cardCountOf("sarah1", "abc123");
+
+        ResponseEntity<Void> first = postWithIdempotencyKey("sarah1", "abc123", "create-1");
+        ResponseEntity<Void> retry = postWithIdempotencyKey("sarah1", "abc123", "create-1");
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(first.getHeaders().containsKey("Idempotent-Replayed")).isFalse();
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getHeaders().getLocation()).isEqualTo(first.getHeaders().getLocation());
+        assertThat(retry.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+        assertThat(cardCountOf("sarah1", "abc123")).isEqualTo(cardCount + 1);
+
+        // keys are per owner
+        ResponseEntity<Void> otherOwner = postWithIdempotencyKey("kumar2", "xyz789", "create-1");
+        assertThat(otherOwner.getHeaders().getLocation()).isNotEqualTo(first.getHeaders().getLocation());
+        assertThat(otherOwner.getHeaders().containsKey("Idempotent-Replayed")).isFalse();
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldCreateOnlyOneCashCardForConcurrentRetries() throws Exception {
+        long cardCount = cardCountOf("sarah1", "abc123");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ResponseEntity<Void>>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(executor.submit(() -> postWithIdempotencyKey("sarah1", "abc123", "concurrent")));
+            }
+            Set<URI> locations = new HashSet<>();
+            for (Future<ResponseEntity<Void>> response : responses) {
+                assertThat(response.get().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+                locations.add(response.get().getHeaders().getLocation());
+            }
+            assertThat(locations).hasSize(1);
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(cardCountOf("sarah1", "abc123")).isEqualTo(cardCount + 1);
+    }
+
+    @Test
+    void shouldRejectAnOverlongIdempotencyKey() {
+        ResponseEntity<Void> response = postWithIdempotencyKey("sarah1", "abc123", "k".repeat(256));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
     // todo refactor all below to meet AAA:
     @Test
     void shouldNotReturnACashCardWithAnUnknownId() {
@@ -227,7 +315,7 @@ class CardcashianApplicationTests {
     @Test
     @DirtiesContext
     void shouldUpdateAnExistingCashCard() {
-        CashCard cashCardUpdate = new CashCard(null, 19.99, null);
+        CashCard cashCardUpdate = new CashCard(null, 1999, null);
         HttpEntity<CashCard> request = new HttpEntity<>(cashCardUpdate);
 
         ResponseEntity<Void> response = restTemplate
@@ -252,7 +340,7 @@ class CardcashianApplicationTests {
 
     @Test
     void shouldNotUpdateACashCardThatDoesNotExist() {
-        CashCard unknownCard = new CashCard(null, 19.99, null);
+        CashCard unknownCard = new CashCard(null, 1999, null);
         HttpEntity<CashCard> request = new HttpEntity<>(unknownCard);
 
         ResponseEntity<Void> response = restTemplate
@@ -265,7 +353,7 @@ class CardcashianApplicationTests {
     // PUT for non-owner should return 404
     @Test
     void shouldNotUpdateACashCardThatIsOwnedBySomeoneElse() {
-        CashCard kumarsCard = new CashCard(null, 333.33, null);
+        CashCard kumarsCard = new CashCard(null, 33333, null);
         HttpEntity<CashCard> request = new HttpEntity<>(kumarsCard);
 
         ResponseEntity<Void> response = restTemplate
@@ -316,4 +404,485 @@ class CardcashianApplicationTests {
                 .getForEntity("/cashcards/102", String.class);
         assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
+
+    @Test
+    @DirtiesContext
+    void shouldCreateCashCardsInBatch() {
+        CashCard[] newCashCards = {new CashCard(null, 25000, null), new CashCard(null, 1750, null)};
+
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForEntity("/cashcards/batch", newCashCards, String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        DocumentContext documentContext = JsonPath.parse(response.getBody());
+        JSONArray statuses = documentContext.read("$[*].status");
+        assertThat(statuses).containsExactly(201, 201);
+
+        String location = documentContext.read("$[1].location");
+        ResponseEntity<String> getResponse = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity(URI.create(location), String.class);
+        assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+        assertThat(amount).isEqualTo(17.50);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldUpdateOnlyOwnedCashCardsInBatch() {
+        CashCard[] cashCardUpdates = {
+                new CashCard(99L, 1999, null),
+                new CashCard(102L, 33333, null),
+                new CashCard(99999L, 100, null)};
+        HttpEntity<CashCard[]> request = new HttpEntity<>(cashCardUpdates);
+
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/cashcards/batch", HttpMethod.PUT, request, String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        JSONArray statuses = JsonPath.parse(response.getBody()).read("$[*].status");
+        assertThat(statuses).containsExactly(204, 404, 404);
+
+        ResponseEntity<String> updated = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards/99", String.class);
+        Double updatedAmount = JsonPath.parse(updated.getBody()).read("$.amount");
+        assertThat(updatedAmount).isEqualTo(19.99);
+
+        ResponseEntity<String> notOwned = restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .getForEntity("/cashcards/102", String.class);
+        Double notOwnedAmount = JsonPath.parse(notOwned.getBody()).read("$.amount");
+        assertThat(notOwnedAmount).isEqualTo(200.00);
+    }
+
+    @Test
+    void shouldWalkAllCashCardsWithCursor() {
+        ResponseEntity<String> firstPage = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards?after=&size=2", String.class);
+        assertThat(firstPage.getStatusCode()).isEqualTo(HttpStatus.OK);
+        JSONArray firstIds = JsonPath.parse(firstPage.getBody()).read("$..id");
+        assertThat(firstIds).containsExactly(99, 100);
+
+        String nextCursor = firstPage.getHeaders().getFirst("Next-Cursor");
+        assertThat(nextCursor).isNotBlank();
+
+        ResponseEntity<String> lastPage = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards?after=" + nextCursor + "&size=2", String.class);
+        assertThat(lastPage.getStatusCode()).isEqualTo(HttpStatus.OK);
+        JSONArray lastIds = JsonPath.parse(lastPage.getBody()).read("$..id");
+        assertThat(lastIds).containsExactly(101);
+        assertThat(lastPage.getHeaders().containsKey("Next-Cursor")).isFalse();
+    }
+
+    @Test
+    void shouldRejectMalformedCursor() {
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards?after=not-a-cursor", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void shouldExportAllOwnedCashCardsAsNdjson() {
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards/export", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+
+        String[] lines = response.getBody().split("\n");
+        assertThat(lines).hasSize(3);
+        Number firstId = JsonPath.parse(lines[0]).read("$.id");
+        assertThat(firstId).isEqualTo(EXPECTED_ID);
+        assertThat(response.getBody()).doesNotContain("kumar2");
+    }
+
+    @Test
+    void shouldSummarizeOwnedCashCards() {
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards/summary", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        DocumentContext documentContext = JsonPath.parse(response.getBody());
+        Number cardCount = documentContext.read("$.cardCount");
+        Double total = documentContext.read("$.total");
+        Double minAmount = documentContext.read("$.minAmount");
+        Double maxAmount = documentContext.read("$.maxAmount");
+        assertThat(cardCount).isEqualTo(3);
+        assertThat(total).isEqualTo(274.45);
+        assertThat(minAmount).isEqualTo(1.00);
+        assertThat(maxAmount).isEqualTo(150.00);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldNotServeStaleCashCardAfterUpdate() {
+        ResponseEntity<String> cachedResponse = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards/99", String.class);
+        Double cachedAmount = JsonPath.parse(cachedResponse.getBody()).read("$.amount");
+        assertThat(cachedAmount).isEqualTo(EXPECTED_AMOUNT);
+
+        HttpEntity<CashCard> request = new HttpEntity<>(new CashCard(null, 1999, null));
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/cashcards/99", HttpMethod.PUT, request, Void.class);
+
+        ResponseEntity<String> getResponse = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards/99", String.class);
+        Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+        assertThat(amount).isEqualTo(19.99);
+    }
+
+    @Test
+    void shouldExposeCashCardCacheMetrics() {
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards/99", String.class);
+
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/actuator/metrics/cache.gets?tag=cache:cashcards", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void shouldExposeCredentialCacheMetrics() {
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/actuator/metrics/cache.gets?tag=cache:credentials&tag=result:hit", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void shouldExposeConnectionPoolMetrics() {
+        for (String metric : new String[]{"hikaricp.connections.acquire", "hikaricp.connections.active",
+                "hikaricp.connections.pending", "hikaricp.connections.timeout"}) {
+            ResponseEntity<String> response = restTemplate
+                    .withBasicAuth("sarah1", "abc123")
+                    .getForEntity("/actuator/metrics/" + metric + "?tag=pool:cardcashian", String.class);
+
+            assertThat(response.getStatusCode()).as(metric).isEqualTo(HttpStatus.OK);
+        }
+    }
+
+    @Test
+    void shouldOnlyExposeHealthToAnonymousClients() {
+        assertThat(restTemplate.getForEntity("/actuator/health", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+        assertThat(restTemplate.getForEntity("/actuator/prometheus", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(restTemplate.getForEntity("/actuator/metrics", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void shouldExposeHotPathMetricsForPrometheus() {
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards?page=0&size=2", String.class);
+
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/actuator/prometheus", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody())
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("spring_data_repository_invocations_seconds_bucket{")
+                .contains("method=\"findByOwner\"")
+                .contains("spring_security_authentications_seconds_bucket{")
+                .contains("spring_security_http_secured_requests_seconds_count{")
+                .contains("cashcards_page_size_cashcards_count{mode=\"offset\"")
+                .contains("cashcards_page_size_cashcards_sum{mode=\"offset\"");
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldAnswerUnchangedCashCardWithNotModified() {
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards/99", String.class);
+        String eTag = response.getHeaders().getETag();
+        assertThat(eTag).isNotNull();
+
+        ResponseEntity<String> notModified = getIfNoneMatch("/cashcards/99", eTag);
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModified.getBody()).isNull();
+        assertThat(notModified.getHeaders().getETag()).isEqualTo(eTag);
+
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/cashcards/99", HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 1999, null)), Void.class);
+
+        ResponseEntity<String> modified = getIfNoneMatch("/cashcards/99", eTag);
+        assertThat(modified.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(modified.getHeaders().getETag()).isNotEqualTo(eTag);
+        Double amount = JsonPath.parse(modified.getBody()).read("$.amount");
+        assertThat(amount).isEqualTo(19.99);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldAnswerUnchangedCashCardListWithNotModified() {
+        // cards 99 and 100
+        String url = "/cashcards?page=0&size=2&sort=id";
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity(url, String.class);
+        List<String> eTags = response.getHeaders().get(HttpHeaders.ETAG);
+        assertThat(eTags).hasSize(1);
+        String eTag = eTags.get(0);
+
+        assertThat(getIfNoneMatch(url, eTag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        // the ETag is the page's: a change of another card leaves it alone
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForEntity("/cashcards/101/adjust", new CashCardAdjustment(1L), Void.class);
+        assertThat(getIfNoneMatch(url, eTag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForEntity("/cashcards/100/adjust", new CashCardAdjustment(1L), Void.class);
+        ResponseEntity<String> afterAdjust = getIfNoneMatch(url, eTag);
+        assertThat(afterAdjust.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(afterAdjust.getHeaders().getETag()).isNotEqualTo(eTag);
+
+        // card 101 moves up into the page
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/cashcards/100", HttpMethod.DELETE, null, Void.class);
+        assertThat(getIfNoneMatch(url, afterAdjust.getHeaders().getETag()).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldAnswerUnchangedCursorPageWithNotModified() {
+        String url = "/cashcards?after=&size=2";
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity(url, String.class);
+        String eTag = response.getHeaders().getETag();
+        assertThat(eTag).startsWith("W/");
+
+        ResponseEntity<String> notModified = getIfNoneMatch(url, eTag);
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModified.getBody()).isNull();
+
+        // the last card leaves the first page without a next one
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/cashcards/101", HttpMethod.DELETE, null, Void.class);
+        ResponseEntity<String> lastPage = getIfNoneMatch(url, eTag);
+        assertThat(lastPage.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(lastPage.getHeaders().containsKey("Next-Cursor")).isFalse();
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldUpdateACashCardOnlyIfItStillMatches() {
+        String eTag = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards/99", String.class)
+                .getHeaders().getETag();
+
+        ResponseEntity<Void> updated = putIfMatch("/cashcards/99", new CashCard(null, 1999, null), eTag);
+        assertThat(updated.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(updated.getHeaders().getETag()).isNotNull().isNotEqualTo(eTag);
+
+        ResponseEntity<Void> conflicting = putIfMatch("/cashcards/99", new CashCard(null, 2999, null), eTag);
+        assertThat(conflicting.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        ResponseEntity<String> getResponse = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards/99", String.class);
+        Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+        assertThat(amount).isEqualTo(19.99);
+        assertThat(getResponse.getHeaders().getETag()).isEqualTo(updated.getHeaders().getETag());
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldUpdateACashCardIfAnyListedETagMatches() {
+        String eTag = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards/99", String.class)
+                .getHeaders().getETag();
+        ResponseEntity<Void> updated = putIfMatch("/cashcards/99", new CashCard(null, 1999, null), eTag);
+
+        // the current ETag last in the list
+        ResponseEntity<Void> listed = putIfMatch("/cashcards/99", new CashCard(null, 2999, null),
+                eTag + ", W/" + updated.getHeaders().getETag() + ", " + updated.getHeaders().getETag());
+        assertThat(listed.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+        assertThat(putIfMatch("/cashcards/99", new CashCard(null, 3999, null),
+                eTag + ", " + updated.getHeaders().getETag()).getStatusCode())
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        Double amount = JsonPath.parse(restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForObject("/cashcards/99", String.class)).read("$.amount");
+        assertThat(amount).isEqualTo(29.99);
+    }
+
+    @Test
+    void shouldRejectAnUpdateWithAForeignOrWeakETag() {
+        assertThat(putIfMatch("/cashcards/99", new CashCard(null, 1999, null), "W/\"0\"").getStatusCode())
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        assertThat(putIfMatch("/cashcards/99", new CashCard(null, 1999, null), "\"abc\"").getStatusCode())
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldLetOnlyOneOfConcurrentConditionalUpdatesWin() throws Exception {
+        String eTag = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards/100", String.class)
+                .getHeaders().getETag();
+
+        int writers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<HttpStatusCode>> results = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                CashCard update = new CashCard(null, 1000 + i, null);
+                results.add(executor.submit(() -> putIfMatch("/cashcards/100", update, eTag).getStatusCode()));
+            }
+            List<HttpStatusCode> statuses = new ArrayList<>();
+            for (Future<HttpStatusCode> result : results) {
+                statuses.add(result.get());
+            }
+            assertThat(statuses).containsOnly(HttpStatus.NO_CONTENT, HttpStatus.PRECONDITION_FAILED);
+            assertThat(statuses).filteredOn(HttpStatus.NO_CONTENT::equals).hasSize(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldNegotiateBinaryFormatsAndKeepJsonAsDefault() throws Exception {
+        for (MediaType binary : List.of(MediaType.valueOf("application/cbor"),
+                MediaType.valueOf("application/x-jackson-smile"))) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setAccept(List.of(binary));
+            ResponseEntity<byte[]> response = restTemplate
+                    .withBasicAuth("sarah1", "abc123")
+                    .exchange("/cashcards/99", HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getHeaders().getContentType()).isEqualTo(binary);
+            ObjectMapper binaryMapper = binary.getSubtype().equals("cbor")
+                    ? new ObjectMapper(new CBORFactory())
+                    : new ObjectMapper(new SmileFactory());
+            assertThat(binaryMapper.readValue(response.getBody(), CashCard.class))
+                    .isEqualTo(new CashCard(99L, 12345, "sarah1"));
+        }
+
+        HttpHeaders anything = new HttpHeaders();
+        anything.setAccept(List.of(MediaType.ALL));
+        ResponseEntity<String> defaultResponse = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/cashcards", HttpMethod.GET, new HttpEntity<>(anything), String.class);
+        assertThat(defaultResponse.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldAcceptABinaryRequestBody() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.valueOf("application/cbor"));
+        byte[] body = new ObjectMapper(new CBORFactory()).writeValueAsBytes(new CashCard(null, 4242, null));
+
+        ResponseEntity<Void> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange(CASHCARDS_URL, HttpMethod.POST, new HttpEntity<>(body, headers), Void.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+
+        ResponseEntity<String> getResponse = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity(response.getHeaders().getLocation(), String.class);
+        Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+        assertThat(amount).isEqualTo(42.42);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldCompressResponsesOnlyForClientsThatAcceptGzip() throws IOException, InterruptedException {
+        CashCard[] newCashCards = new CashCard[100];
+        Arrays.fill(newCashCards, new CashCard(null, 100, null));
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForEntity("/cashcards/batch", newCashCards, String.class);
+
+        // The Apache client behind TestRestTemplate inflates gzip bodies and drops Content-Encoding,
+        // so the raw exchange goes through the JDK client instead.
+        HttpResponse<byte[]> largePage = get("/cashcards?page=0&size=100", "gzip");
+        assertThat(largePage.statusCode()).isEqualTo(200);
+        assertThat(largePage.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).hasValue("gzip");
+        assertThat(gunzip(largePage.body())).startsWith("[{");
+
+        HttpResponse<byte[]> plainPage = get("/cashcards?page=0&size=100", "identity");
+        assertThat(plainPage.statusCode()).isEqualTo(200);
+        assertThat(plainPage.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).isEmpty();
+        assertThat(plainPage.body().length).isGreaterThan(largePage.body().length * 4);
+    }
+
+    private HttpResponse<byte[]> get(String path, String acceptEncoding) throws IOException, InterruptedException {
+        String credentials = Base64.getEncoder().encodeToString("sarah1:abc123".getBytes(StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(restTemplate.getRootUri() + path))
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + credentials)
+                .header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding)
+                .GET()
+                .build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static String gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private ResponseEntity<Void> postWithIdempotencyKey(String username, String password, String key) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Idempotency-Key", key);
+        return restTemplate
+                .withBasicAuth(username, password)
+                .exchange(CASHCARDS_URL, HttpMethod.POST, new HttpEntity<>(new CashCard(null, 2500, null), headers),
+                        Void.class);
+    }
+
+    private long cardCountOf(String username, String password) {
+        String summary = restTemplate
+                .withBasicAuth(username, password)
+                .getForObject(CASHCARDS_URL + "/summary", String.class);
+        return JsonPath.parse(summary).read("$.cardCount", Long.class);
+    }
+
+    private ResponseEntity<Void> putIfMatch(String url, CashCard cashCard, String eTag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfMatch(eTag);
+        return restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange(url, HttpMethod.PUT, new HttpEntity<>(cashCard, headers), Void.class);
+    }
+
+    private ResponseEntity<String> getIfNoneMatch(String url, String eTag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+        return restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
 }
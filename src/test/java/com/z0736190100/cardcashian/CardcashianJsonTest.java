@@ -1,5 +1,6 @@
 package com.z0736190100.cardcashian;
 
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.z0736190100.cardcashian.model.CashCard;
 import org.assertj.core.util.Arrays;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,6 +13,7 @@ import org.springframework.web.client.RestTemplate;
 import java.io.IOException;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 
 @JsonTest
@@ -28,16 +30,16 @@ class CardcashianJsonTest {
     @BeforeEach
     void setUp() {
         cashCards = Arrays.array(
-                new CashCard(99L, 123.45, "sarah1"),
-                new CashCard(100L, 1.00, "sarah1"),
-                new CashCard(101L, 150.00, "sarah1"));
+                new CashCard(99L, 12345, "sarah1"),
+                new CashCard(100L, 100, "sarah1"),
+                new CashCard(101L, 15000, "sarah1"));
     }
 
     // todo fixme refactor all tests to meet AAA
 
     @Test
     void cashCardSerializationTest() throws IOException {
-        CashCard cashCard = new CashCard(99L, 123.45, "sarah1");
+        CashCard cashCard = new CashCard(99L, 12345, "sarah1");
         assertThat(json.write(cashCard)).isStrictlyEqualToJson("/model/cashcard/single.json");
         assertThat(json.write(cashCard)).hasJsonPathNumberValue("@.id");
         assertThat(json.write(cashCard)).extractingJsonPathNumberValue("@.id")
@@ -74,8 +76,39 @@ class CardcashianJsonTest {
                 }
                 """;
         assertThat(json.parse(expected))
-                .isEqualTo(new CashCard(99L, 123.45, "sarah1"));
+                .isEqualTo(new CashCard(99L, 12345, "sarah1"));
         assertThat(json.parseObject(expected).id()).isEqualTo(99);
-        assertThat(json.parseObject(expected).amount()).isEqualTo(123.45);
+        assertThat(json.parseObject(expected).amount()).isEqualTo(12345L);
+    }
+
+    @Test
+    void cashCardNegativeAndSmallAmountSerializationTest() throws IOException {
+        assertThat(json.write(new CashCard(1L, -5, "sarah1")))
+                .extractingJsonPathNumberValue("@.amount").isEqualTo(-0.05);
+        assertThat(json.write(new CashCard(1L, 0, "sarah1")).getJson()).contains("\"amount\":0.00");
+        assertThat(json.write(new CashCard(1L, Long.MIN_VALUE, "sarah1")).getJson())
+                .contains("\"amount\":-92233720368547758.08");
+        assertThat(json.write(new CashCard(1L, Long.MAX_VALUE, "sarah1")).getJson())
+                .contains("\"amount\":92233720368547758.07");
+    }
+
+    @Test
+    void cashCardWithMoreThanTwoDecimalPlacesIsRejectedTest() {
+        String tooPrecise = """
+                { "id": 99, "amount": 123.456, "owner": "sarah1" }
+                """;
+        assertThatThrownBy(() -> json.parseObject(tooPrecise)).isInstanceOf(JsonMappingException.class);
+    }
+
+    @Test
+    void cashCardWithoutAmountIsRejectedTest() {
+        String missing = """
+                { "id": 99, "owner": "sarah1" }
+                """;
+        String nullAmount = """
+                { "id": 99, "amount": null, "owner": "sarah1" }
+                """;
+        assertThatThrownBy(() -> json.parseObject(missing)).isInstanceOf(JsonMappingException.class);
+        assertThatThrownBy(() -> json.parseObject(nullAmount)).isInstanceOf(JsonMappingException.class);
     }
 }
@@ -0,0 +1,44 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.AmountDeserializer;
+import com.z0736190100.cardcashian.model.AmountSerializer;
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.repo.OwnerTotalTrigger;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardcashianRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    CardcashianRuntimeHintsTest() {
+        new CardcashianRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void shouldRegisterTheJsonModelForBinding() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(CashCard.class)
+                .withMemberCategories(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.DECLARED_FIELDS))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(CashCard.class, "amount")).accepts(hints);
+        // named in @JsonSerialize/@JsonDeserialize, instantiated by Jackson
+        assertThat(RuntimeHintsPredicates.reflection().onType(AmountSerializer.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(AmountDeserializer.class)).accepts(hints);
+    }
+
+    @Test
+    void shouldRegisterTheTriggerH2CreatesByName() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(OwnerTotalTrigger.class)
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS))
+                .accepts(hints);
+    }
+
+    @Test
+    void shouldRegisterTheSchema() {
+        assertThat(RuntimeHintsPredicates.resource().forResource("schema.sql")).accepts(hints);
+    }
+}
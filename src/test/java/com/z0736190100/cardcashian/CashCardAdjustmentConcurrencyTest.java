@@ -0,0 +1,68 @@
+package com.z0736190100.cardcashian;
+
+import com.jayway.jsonpath.JsonPath;
+import com.z0736190100.cardcashian.model.CashCardAdjustment;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 3200 requests of one user, far above the default rate limit on a fast machine
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "cardcashian.security.rate-limit.enabled=false")
+class CashCardAdjustmentConcurrencyTest {
+
+    private static final int ADJUSTERS = 32;
+    private static final int ADJUSTMENTS_PER_ADJUSTER = 100;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    @DirtiesContext
+    void shouldNotLoseConcurrentAdjustments() throws Exception {
+        ExecutorService adjusters = Executors.newFixedThreadPool(ADJUSTERS);
+        List<Future<HttpStatus>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < ADJUSTERS * ADJUSTMENTS_PER_ADJUSTER; i++) {
+                // every other adjustment is a withdrawal, each pair adds up to +1.00
+                CashCardAdjustment adjustment = new CashCardAdjustment(i % 2 == 0 ? 150L : -50L);
+                results.add(adjusters.submit(() -> HttpStatus.valueOf(restTemplate
+                        .withBasicAuth("sarah1", "abc123")
+                        .postForEntity("/cashcards/99/adjust", adjustment, Void.class)
+                        .getStatusCode().value())));
+            }
+            for (Future<HttpStatus> result : results) {
+                assertThat(result.get()).isEqualTo(HttpStatus.NO_CONTENT);
+            }
+        } finally {
+            adjusters.shutdownNow();
+        }
+
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/cashcards/99", String.class);
+        Double amount = JsonPath.parse(response.getBody()).read("$.amount");
+        assertThat(amount).isEqualTo(123.45 + ADJUSTERS * ADJUSTMENTS_PER_ADJUSTER / 2);
+    }
+
+    @Test
+    void shouldNotAdjustACashCardOwnedBySomeoneElse() {
+        ResponseEntity<Void> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForEntity("/cashcards/102/adjust", new CashCardAdjustment(1000L), Void.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+}
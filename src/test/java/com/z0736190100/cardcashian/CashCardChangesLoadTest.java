@@ -0,0 +1,173 @@
+package com.z0736190100.cardcashian;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Keeps thousands of {@code GET /cashcards/changes} streams of one owner open, updates one of the owner's cards
+ * and measures how long each update takes to reach every stream, from sending the PUT to reading the event.
+ * The streams are read without a client thread per stream. Run with {@code ./gradlew loadTest}.
+ */
+@Tag("load")
+class CashCardChangesLoadTest {
+
+    private static final int SUBSCRIBERS = 2_000;
+    private static final int CHANGES = 50;
+    // streams being opened at a time, below the listen backlog
+    private static final int CONNECTING = 100;
+
+    private final String authorization = "Basic " + Base64.getEncoder()
+            .encodeToString("sarah1:abc123".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    void shouldFanOutEveryChangeToThousandsOfSubscribers() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(CardcashianApplication.class)
+                .run("--server.port=0",
+                        // one user opens all streams and sends all updates
+                        "--cardcashian.security.rate-limit.enabled=false",
+                        "--logging.level.root=WARN")) {
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            HttpClient httpClient = HttpClient.newHttpClient();
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+            AtomicLongArray sentAt = new AtomicLongArray(CHANGES);
+            long[] latencies = new long[SUBSCRIBERS * CHANGES];
+            AtomicInteger delivered = new AtomicInteger();
+            CountDownLatch allDelivered = new CountDownLatch(SUBSCRIBERS * CHANGES);
+            Semaphore connecting = new Semaphore(CONNECTING);
+            CountDownLatch connected = new CountDownLatch(SUBSCRIBERS);
+
+            long heapBefore = usedHeapAfterGc();
+            threads.resetPeakThreadCount();
+            for (int i = 0; i < SUBSCRIBERS; i++) {
+                connecting.acquire();
+                HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/cashcards/changes"))
+                        .header("Accept", "text/event-stream")
+                        .header("Authorization", authorization)
+                        .build();
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(new LineSubscriber() {
+                    @Override
+                    void onEvent(String name, String data) {
+                        if (name.equals("ready")) {
+                            connecting.release();
+                            connected.countDown();
+                        } else if (name.equals("updated")) {
+                            int change = changeOf(data);
+                            latencies[delivered.getAndIncrement()] = System.nanoTime() - sentAt.get(change);
+                            allDelivered.countDown();
+                        }
+                    }
+                }));
+            }
+            assertThat(connected.await(60, TimeUnit.SECONDS)).isTrue();
+            long heapPerSubscriber = Math.max(0, usedHeapAfterGc() - heapBefore) / SUBSCRIBERS;
+            assertThat(meterRegistry.get("cashcards.changes.subscribers").gauge().value()).isEqualTo(SUBSCRIBERS);
+
+            long started = System.nanoTime();
+            for (int change = 0; change < CHANGES; change++) {
+                sentAt.set(change, System.nanoTime());
+                // the amount in cents is the change's index
+                HttpResponse<Void> response = httpClient.send(
+                        LoadGenerator.get(base + "/cashcards/99")
+                                .header("Authorization", authorization)
+                                .header("Content-Type", "application/json")
+                                .PUT(HttpRequest.BodyPublishers.ofString(
+                                        String.format("{\"amount\": %d.%02d}", change / 100, change % 100)))
+                                .build(),
+                        HttpResponse.BodyHandlers.discarding());
+                assertThat(response.statusCode()).isEqualTo(204);
+            }
+            boolean complete = allDelivered.await(60, TimeUnit.SECONDS);
+            long elapsed = System.nanoTime() - started;
+
+            int count = delivered.get();
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            LoadGenerator.Result fanOut = new LoadGenerator.Result(sorted, 0, elapsed, heapPerSubscriber,
+                    threads.getPeakThreadCount());
+            double dropped = meterRegistry.get("cashcards.changes.dropped").counter().count();
+            System.out.printf("%d subscribers x %d changes: %d delivered, %.0f subscribers dropped, "
+                            + "%.0f events/s, p50 %d ms, p99 %d ms, max %d ms, %d KiB heap per subscriber, "
+                            + "%d threads%n",
+                    SUBSCRIBERS, CHANGES, count, dropped, count / (elapsed / 1_000_000_000.0),
+                    fanOut.percentile(50).toMillis(), fanOut.percentile(99).toMillis(),
+                    fanOut.percentile(100).toMillis(), heapPerSubscriber / 1024, fanOut.peakThreads());
+
+            assertThat(complete).isTrue();
+            assertThat(dropped).isZero();
+        }
+    }
+
+    // {"id":99,"amount":0.42} -> 42
+    private static int changeOf(String data) {
+        String amount = data.substring(data.indexOf("\"amount\":") + 9, data.indexOf('}'));
+        return Math.round(Float.parseFloat(amount) * 100);
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Collects the {@code event:} and {@code data:} lines of each event; keep-alive comments are skipped.
+     */
+    private abstract static class LineSubscriber implements Flow.Subscriber<String> {
+
+        private String name;
+        private String data;
+
+        abstract void onEvent(String name, String data);
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.isEmpty()) {
+                if (name != null) {
+                    onEvent(name, data);
+                }
+                name = null;
+                data = null;
+            } else if (line.startsWith("event:")) {
+                name = line.substring(6);
+            } else if (line.startsWith("data:")) {
+                data = line.substring(5);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
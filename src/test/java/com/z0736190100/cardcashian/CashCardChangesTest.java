@@ -0,0 +1,182 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.model.CashCardAdjustment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// creates cards of its own: the context is not reused by tests that count sarah1's cards
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext
+class CashCardChangesTest {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @LocalServerPort
+    int port;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final List<EventStream> streams = new ArrayList<>();
+
+    @AfterEach
+    void closeStreams() {
+        streams.forEach(EventStream::close);
+    }
+
+    @Test
+    void shouldStreamTheChangesOfTheOwnersCardsOnly() throws Exception {
+        EventStream sarah = subscribe("sarah1", "abc123", null);
+        EventStream kumar = subscribe("kumar2", "xyz789", null);
+        assertThat(sarah.next().name()).isEqualTo("ready");
+        assertThat(kumar.next().name()).isEqualTo("ready");
+
+        URI location = restTemplate.withBasicAuth("sarah1", "abc123")
+                .postForLocation("/cashcards", new CashCard(null, 25000, null));
+        String id = location.getPath().substring(location.getPath().lastIndexOf('/') + 1);
+        restTemplate.withBasicAuth("sarah1", "abc123")
+                .exchange(location, HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 30000, null)), Void.class);
+        restTemplate.withBasicAuth("sarah1", "abc123").delete(location);
+        restTemplate.withBasicAuth("kumar2", "xyz789")
+                .exchange("/cashcards/102", HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 21000, null)),
+                        Void.class);
+
+        Event created = sarah.next();
+        assertThat(created.name()).isEqualTo("created");
+        assertThat(created.data()).isEqualTo("{\"id\":" + id + ",\"amount\":250.00}");
+        assertThat(sarah.next().data()).isEqualTo("{\"id\":" + id + ",\"amount\":300.00}");
+        assertThat(sarah.next()).extracting(Event::name, Event::data).containsExactly("deleted", "{\"id\":" + id + "}");
+        // nothing of sarah1's: the first event kumar2 gets is about kumar2's card
+        assertThat(kumar.next()).extracting(Event::name, Event::data)
+                .containsExactly("updated", "{\"id\":102,\"amount\":210.00}");
+    }
+
+    @Test
+    void shouldResumeAfterTheLastEventIdWithoutAFullResync() throws Exception {
+        EventStream stream = subscribe("sarah1", "abc123", null);
+        String lastEventId = stream.next().id();
+        stream.close();
+
+        restTemplate.withBasicAuth("sarah1", "abc123")
+                .postForLocation("/cashcards/99/adjust", new CashCardAdjustment(-45L));
+
+        EventStream resumed = subscribe("sarah1", "abc123", lastEventId);
+        assertThat(resumed.next()).extracting(Event::name, Event::data)
+                .containsExactly("adjusted", "{\"id\":99,\"delta\":-0.45}");
+    }
+
+    @Test
+    void shouldAskToResyncWhenTheLastEventIdCannotBeResumed() throws Exception {
+        EventStream stream = subscribe("sarah1", "abc123", "not-from-this-instance-42");
+
+        assertThat(stream.next().name()).isEqualTo("reset");
+    }
+
+    @Test
+    void shouldRejectUnauthenticatedSubscribers() {
+        ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1", "BAD-PASSWORD")
+                .getForEntity("/cashcards/changes", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    private EventStream subscribe(String username, String password, String lastEventId) throws Exception {
+        URI uri = URI.create("http://localhost:" + port + "/cashcards/changes");
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .header("Accept", MediaType.TEXT_EVENT_STREAM_VALUE)
+                .header("Authorization", "Basic " + Base64.getEncoder()
+                        .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8)));
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        HttpResponse<Stream<String>> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofLines());
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(
+                contentType -> assertThat(contentType).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+        EventStream stream = new EventStream(response.body());
+        streams.add(stream);
+        return stream;
+    }
+
+    record Event(String id, String name, String data) {
+    }
+
+    /**
+     * Parses the {@code text/event-stream} lines on a thread of its own; keep-alive comments are skipped.
+     */
+    static final class EventStream {
+
+        private final Stream<String> lines;
+        private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+
+        EventStream(Stream<String> lines) {
+            this.lines = lines;
+            Thread reader = new Thread(this::read, "sse-test-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        Event next() throws InterruptedException, IOException {
+            Event event = events.poll(10, TimeUnit.SECONDS);
+            if (event == null) {
+                throw new IOException("No event within 10 seconds");
+            }
+            return event;
+        }
+
+        void close() {
+            lines.close();
+        }
+
+        private void read() {
+            String id = null;
+            String name = null;
+            StringBuilder data = new StringBuilder();
+            try {
+                for (String line : (Iterable<String>) lines::iterator) {
+                    if (line.isEmpty()) {
+                        if (name != null) {
+                            events.add(new Event(id, name, data.toString()));
+                        }
+                        name = null;
+                        data.setLength(0);
+                    } else if (line.startsWith("id:")) {
+                        id = line.substring(3);
+                    } else if (line.startsWith("event:")) {
+                        name = line.substring(6);
+                    } else if (line.startsWith("data:")) {
+                        data.append(line.substring(5));
+                    }
+                }
+            } catch (RuntimeException e) {
+                // closed
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.model.CashCardAdjustment;
+import com.z0736190100.cardcashian.model.CashCardSummary;
+import com.z0736190100.cardcashian.repo.CashCardRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "cardcashian.summary.running-totals=true")
+class CashCardRunningTotalsTest {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    CashCardRepository cashCardRepository;
+
+    @Test
+    void shouldBackfillRunningTotalsOfExistingCashCards() {
+        assertThat(cashCardRepository.findRunningSummaryByOwner("sarah1"))
+                .isEqualTo(cashCardRepository.summarizeByOwner("sarah1"))
+                .isEqualTo(new CashCardSummary(3, 27445, 100L, 15000L));
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldKeepRunningTotalsOnEveryWrite() {
+        URI location = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForLocation("/cashcards", new CashCard(null, 5000, null));
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/cashcards/99", HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 10000, null)), Void.class);
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForEntity("/cashcards/100/adjust", new CashCardAdjustment(-50L), Void.class);
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange(location, HttpMethod.DELETE, null, Void.class);
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/cashcards/101", HttpMethod.DELETE, null, Void.class);
+        restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .postForEntity("/cashcards/batch", List.of(new CashCard(null, 700, null)), String.class);
+
+        assertThat(restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForObject("/cashcards/summary", CashCardSummary.class))
+                .isEqualTo(cashCardRepository.summarizeByOwner("sarah1"))
+                .isEqualTo(new CashCardSummary(2, 10050, 50L, 10000L));
+        assertThat(cashCardRepository.findRunningSummaryByOwner("kumar2"))
+                .isEqualTo(new CashCardSummary(2, 20700, 700L, 20000L));
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldSummarizeAnOwnerWithoutCashCardsAsEmpty() {
+        cashCardRepository.deleteById(102L);
+
+        assertThat(cashCardRepository.findRunningSummaryByOwner("kumar2")).isNull();
+        assertThat(restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .getForObject("/cashcards/summary", CashCardSummary.class))
+                .isEqualTo(CashCardSummary.EMPTY);
+    }
+}
@@ -0,0 +1,140 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.repo.CashCardRepository;
+import com.z0736190100.cardcashian.repo.IdempotencyStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "cardcashian.idempotency.store=jdbc")
+class JdbcIdempotencyStoreTest {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    CashCardRepository cashCardRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    IdempotencyStore idempotencyStore;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    @DirtiesContext
+    void shouldReplayACreateFromTheTable() {
+        ResponseEntity<Void> first = postWithIdempotencyKey("create-1");
+        ResponseEntity<Void> retry = postWithIdempotencyKey("create-1");
+
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getHeaders().getLocation()).isEqualTo(first.getHeaders().getLocation());
+        assertThat(retry.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT CASH_CARD_ID FROM CASH_CARD_IDEMPOTENCY_KEY WHERE OWNER = 'sarah1' AND IDEMPOTENCY_KEY = ?",
+                Long.class, "create-1"))
+                .isEqualTo(idOf(first.getHeaders().getLocation()));
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldRollBackTheCashCardsOfConcurrentRetriesThatLost() throws Exception {
+        long cardCount = cashCardRepository.summarizeByOwner("sarah1").cardCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ResponseEntity<Void>>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(executor.submit(() -> postWithIdempotencyKey("concurrent")));
+            }
+            Set<URI> locations = new HashSet<>();
+            for (Future<ResponseEntity<Void>> response : responses) {
+                assertThat(response.get().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+                locations.add(response.get().getHeaders().getLocation());
+            }
+            assertThat(locations).hasSize(1);
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(cashCardRepository.summarizeByOwner("sarah1").cardCount()).isEqualTo(cardCount + 1);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldCreateAgainOnceTheKeyExpired() {
+        Timestamp longAgo = Timestamp.from(Instant.now().minus(Duration.ofDays(2)));
+        jdbcTemplate.update("INSERT INTO CASH_CARD_IDEMPOTENCY_KEY VALUES ('sarah1', 'expired', 99, ?)", longAgo);
+
+        ResponseEntity<Void> response = postWithIdempotencyKey("expired");
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(response.getHeaders().containsKey("Idempotent-Replayed")).isFalse();
+        assertThat(idOf(response.getHeaders().getLocation())).isNotEqualTo(99L);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldCreateWhenTheKeyIsTakenAgainByAnExpiredEntry() {
+        Timestamp longAgo = Timestamp.from(Instant.now().minus(Duration.ofDays(2)));
+        TransactionTemplate racer = new TransactionTemplate(transactionManager);
+        racer.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicInteger creates = new AtomicInteger();
+
+        // the first two creates lose to an expired entry committed meanwhile: no winner to return, just retry
+        IdempotencyStore.Outcome outcome = idempotencyStore.createOnce("sarah1", "churn", () -> {
+            if (creates.incrementAndGet() < 3) {
+                racer.executeWithoutResult(status -> jdbcTemplate.update(
+                        "INSERT INTO CASH_CARD_IDEMPOTENCY_KEY VALUES ('sarah1', 'churn', 99, ?)", longAgo));
+            }
+            return 4242L;
+        });
+
+        assertThat(outcome).isEqualTo(new IdempotencyStore.Outcome(4242L, false));
+        assertThat(creates).hasValue(3);
+    }
+
+    private ResponseEntity<Void> postWithIdempotencyKey(String key) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Idempotency-Key", key);
+        return restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/cashcards", HttpMethod.POST, new HttpEntity<>(new CashCard(null, 2500, null), headers),
+                        Void.class);
+    }
+
+    private static Long idOf(URI location) {
+        String path = location.getPath();
+        return Long.valueOf(path.substring(path.lastIndexOf('/') + 1));
+    }
+}
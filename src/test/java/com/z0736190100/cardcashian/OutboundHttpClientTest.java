@@ -0,0 +1,140 @@
+package com.z0736190100.cardcashian;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.aot.DisabledInAotMode;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// two local stub instances of "card-stub", listed as simple discovery instances: no Eureka, no network.
+// Their ports are only known at run time, so this test is left out of the build-time (test AOT) processing
+@SpringBootTest(properties = "cardcashian.http-client.read-timeout=500ms")
+@DisabledInAotMode
+class OutboundHttpClientTest {
+
+    private static ExecutorService executor;
+    private static List<Stub> stubs;
+
+    @Autowired
+    RestTemplate restTemplate;
+
+    @BeforeAll
+    static void startStubs() {
+        executor = Executors.newCachedThreadPool();
+        stubs = List.of(new Stub(), new Stub());
+    }
+
+    @DynamicPropertySource
+    static void stubInstances(DynamicPropertyRegistry registry) {
+        for (int i = 0; i < 2; i++) {
+            int stub = i;
+            registry.add("spring.cloud.discovery.client.simple.instances.card-stub[" + i + "].uri",
+                    () -> "http://localhost:" + stubs.get(stub).server.getAddress().getPort());
+        }
+    }
+
+    @AfterAll
+    static void stopStubs() {
+        stubs.forEach(stub -> stub.server.stop(0));
+        executor.shutdownNow();
+    }
+
+    @BeforeEach
+    void resetStubs() {
+        stubs.forEach(Stub::reset);
+    }
+
+    @Test
+    void shouldSpreadCallsOverTheInstancesOfAService() {
+        for (int i = 0; i < 20; i++) {
+            assertThat(restTemplate.getForObject("http://card-stub/ping", String.class)).isEqualTo("pong");
+        }
+
+        // round robin
+        assertThat(stubs).allSatisfy(stub -> assertThat(stub.requests.get()).isEqualTo(10));
+    }
+
+    @Test
+    void shouldReuseConnections() {
+        for (int i = 0; i < 100; i++) {
+            restTemplate.getForObject("http://card-stub/ping", String.class);
+        }
+
+        // sequential calls: one kept-alive connection per instance (a few more if the pool validates one away)
+        assertThat(stubs).allSatisfy(stub -> {
+            assertThat(stub.requests.get()).isEqualTo(50);
+            assertThat(stub.clientPorts).hasSizeLessThanOrEqualTo(2);
+        });
+    }
+
+    @Test
+    void shouldGiveUpOnASilentInstanceAfterTheReadTimeout() {
+        long start = System.nanoTime();
+
+        assertThatThrownBy(() -> restTemplate.getForObject("http://card-stub/slow", String.class))
+                .isInstanceOf(ResourceAccessException.class)
+                .hasRootCauseInstanceOf(SocketTimeoutException.class);
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(1_500);
+    }
+
+    private static final class Stub {
+
+        final HttpServer server;
+        final AtomicInteger requests = new AtomicInteger();
+        final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+        Stub() {
+            try {
+                server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            server.setExecutor(executor);
+            server.createContext("/ping", exchange -> {
+                requests.incrementAndGet();
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                byte[] body = "pong".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            });
+            server.createContext("/slow", exchange -> {
+                try {
+                    Thread.sleep(3_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+            });
+            server.start();
+        }
+
+        void reset() {
+            requests.set(0);
+            clientPorts.clear();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.z0736190100.cardcashian;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// one token per 100 seconds: nothing refills while the tests run
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "cardcashian.security.rate-limit.roles[CARD-OWNER].permits-per-second=0.01",
+                "cardcashian.security.rate-limit.roles[CARD-OWNER].burst=3",
+                "cardcashian.security.rate-limit.others.permits-per-second=0.01",
+                "cardcashian.security.rate-limit.others.burst=1"})
+class RateLimitTest {
+
+    @Autowired
+    RestTemplateBuilder restTemplateBuilder;
+
+    @LocalServerPort
+    int port;
+
+    TestRestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // the default Apache client silently waits out Retry-After and repeats the request
+        restTemplate = new TestRestTemplate(restTemplateBuilder
+                .rootUri("http://localhost:" + port)
+                .requestFactory(JdkClientHttpRequestFactory.class));
+    }
+
+    @Test
+    void shouldRejectAnOwnerOverTheLimitWithRetryAfter() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(getCashCards("sarah1", "abc123").getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+
+        ResponseEntity<String> response = getCashCards("sarah1", "abc123");
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(Long.parseLong(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER))).isBetween(1L, 100L);
+        assertThat(response.getBody()).isNull();
+
+        // other owners have their own bucket
+        assertThat(getCashCards("kumar2", "xyz789").getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void shouldApplyTheDefaultLimitToOtherRoles() {
+        assertThat(getCashCards("hank-owns-no-cards", "qrs456").getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(getCashCards("hank-owns-no-cards", "qrs456").getStatusCode())
+                .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @Test
+    void shouldNotLimitUnauthenticatedRequests() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(getCashCards("sarah1", "BAD-PASSWORD").getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        }
+    }
+
+    private ResponseEntity<String> getCashCards(String username, String password) {
+        return restTemplate
+                .withBasicAuth(username, password)
+                .getForEntity("/cashcards", String.class);
+    }
+}
@@ -0,0 +1,208 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.model.CashCardAdjustment;
+import com.z0736190100.cardcashian.repo.CashCardRepository;
+import com.z0736190100.cardcashian.repo.ShardRebalancer;
+import com.z0736190100.cardcashian.repo.ShardRoutingDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "cardcashian.sharding.enabled=true",
+                "cardcashian.sharding.shards[0].url=jdbc:h2:mem:shard-0-${random.uuid};DB_CLOSE_DELAY=-1",
+                "cardcashian.sharding.shards[0].username=sa",
+                "cardcashian.sharding.shards[1].url=jdbc:h2:mem:shard-1-${random.uuid};DB_CLOSE_DELAY=-1",
+                "cardcashian.sharding.shards[1].username=sa",
+                "cardcashian.sharding.shards[2].url=jdbc:h2:mem:shard-2-${random.uuid};DB_CLOSE_DELAY=-1",
+                "cardcashian.sharding.shards[2].username=sa",
+                "cardcashian.idempotency.store=jdbc"})
+@DirtiesContext
+class ShardedCashCardTest {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    CashCardRepository cashCardRepository;
+
+    @Autowired
+    ShardRoutingDataSource shards;
+
+    @Autowired
+    ShardRebalancer rebalancer;
+
+    @Test
+    void shouldServeEveryOwnerFromTheOwnersShard() {
+        URI location = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForLocation("/cashcards", new CashCard(null, 250, null));
+        long id = Long.parseLong(location.getPath().substring("/cashcards/".length()));
+        int shard = shards.shardOf("sarah1");
+
+        assertThat(ShardRoutingDataSource.shardOfId(id)).isEqualTo(shard);
+        assertThat(rowsOf(id)).containsOnly(1, 0).satisfies(rows -> assertThat(rows[shard]).isEqualTo(1));
+
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange(location, HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 300, null)), Void.class);
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForEntity(location + "/adjust", new CashCardAdjustment(-100L), Void.class);
+        assertThat(restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForObject(location, CashCard.class).amount())
+                .isEqualTo(200);
+        assertThat(restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForObject("/cashcards", CashCard[].class))
+                .extracting(CashCard::id)
+                .contains(id);
+        assertThat(restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .exchange(location, HttpMethod.DELETE, null, Void.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+
+        ResponseEntity<Void> deleted = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange(location, HttpMethod.DELETE, null, Void.class);
+
+        assertThat(deleted.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(rowsOf(id)).containsOnly(0);
+    }
+
+    @Test
+    void shouldReplayIdempotentCreatesOnTheOwnersShard() {
+        URI first = postWithIdempotencyKey("kumar2", "xyz789", "sharded-create");
+        URI retry = postWithIdempotencyKey("kumar2", "xyz789", "sharded-create");
+
+        assertThat(retry).isEqualTo(first);
+        assertThat(jdbcTemplate(shards.shardOf("kumar2")).queryForObject(
+                "SELECT COUNT(*) FROM CASH_CARD_IDEMPOTENCY_KEY WHERE OWNER = 'kumar2'", Integer.class))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldSplitBatchesOverTheShardsOfTheirOwners() {
+        List<CashCard> cashCards = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            cashCards.add(new CashCard(null, i, "batch-owner-" + i));
+        }
+
+        List<CashCard> inserted = cashCardRepository.insertAll(cashCards);
+
+        assertThat(inserted).extracting(CashCard::owner).isEqualTo(cashCards.stream().map(CashCard::owner).toList());
+        assertThat(inserted).allSatisfy(cashCard -> assertThat(ShardRoutingDataSource.shardOfId(cashCard.id()))
+                .isEqualTo(shards.shardOf(cashCard.owner())));
+        assertThat(inserted).extracting(cashCard -> shards.shardOf(cashCard.owner())).containsOnly(0, 1, 2);
+
+        int[] updated = cashCardRepository.updateAmounts(inserted.stream()
+                .map(cashCard -> new CashCard(cashCard.id(), cashCard.amount() + 1, cashCard.owner()))
+                .toList());
+
+        assertThat(updated).containsOnly(1).hasSize(30);
+        assertThat(cashCardRepository.findByIdAndOwner(inserted.get(29).id(), "batch-owner-29"))
+                .extracting(CashCard::amount).isEqualTo(30L);
+    }
+
+    @Test
+    void shouldRefuseQueriesThatAreNotScopedToAnOwner() {
+        assertThatThrownBy(() -> cashCardRepository.count()).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> cashCardRepository.findById(99L)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> cashCardRepository.deleteById(99L)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void shouldNotLoadTheSingleDatabaseTestData() {
+        assertThat(cashCardRepository.findByIdAndOwner(99L, "sarah1")).isNull();
+        assertThat(cashCardRepository.summarizeByOwner("sarah1").cardCount()).isZero();
+    }
+
+    @Test
+    void shouldMoveOwnersOnAnotherShardToTheirShardAndKeepTheirIds() {
+        // as if shards 1 and 2 were just added to a single shard 0: ids generated by shard 0
+        int misplaced = 0;
+        JdbcTemplate shardZero = jdbcTemplate(0);
+        for (int i = 0; i < 20; i++) {
+            String owner = "moved-owner-" + i;
+            for (int card = 0; card < 3; card++) {
+                shardZero.update("INSERT INTO CASH_CARD (ID, AMOUNT, OWNER, VERSION) VALUES (?, ?, ?, 7)",
+                        idOnShardZero(i * 3 + card), card, owner);
+            }
+            shardZero.update("INSERT INTO CASH_CARD_IDEMPOTENCY_KEY VALUES (?, 'key', ?, ?)",
+                    owner, idOnShardZero(i * 3), Timestamp.from(Instant.now()));
+            if (shards.shardOf(owner) != 0) {
+                misplaced++;
+            }
+        }
+
+        ShardRebalancer.Result result = rebalancer.rebalance();
+
+        assertThat(misplaced).isPositive();
+        assertThat(result).isEqualTo(new ShardRebalancer.Result(misplaced, misplaced * 3L));
+        for (int i = 0; i < 20; i++) {
+            String owner = "moved-owner-" + i;
+            int shard = shards.shardOf(owner);
+            for (int card = 0; card < 3; card++) {
+                long id = idOnShardZero(i * 3 + card);
+                assertThat(rowsOf(id)[shard]).isEqualTo(1);
+                assertThat(cashCardRepository.findByIdAndOwner(id, owner))
+                        .isEqualTo(new CashCard(id, card, owner, 7L));
+                // the id may still name shard 0: a lookup by id alone is refused, not answered from there
+                assertThatThrownBy(() -> cashCardRepository.findById(id))
+                        .isInstanceOf(IllegalStateException.class);
+            }
+            assertThat(jdbcTemplate(shard).queryForObject(
+                    "SELECT CASH_CARD_ID FROM CASH_CARD_IDEMPOTENCY_KEY WHERE OWNER = ?", Long.class, owner))
+                    .isEqualTo(idOnShardZero(i * 3));
+        }
+        assertThat(rebalancer.rebalance()).isEqualTo(new ShardRebalancer.Result(0, 0));
+    }
+
+    private URI postWithIdempotencyKey(String username, String password, String key) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Idempotency-Key", key);
+        return restTemplate
+                .withBasicAuth(username, password)
+                .exchange("/cashcards", HttpMethod.POST, new HttpEntity<>(new CashCard(null, 100, null), headers),
+                        Void.class)
+                .getHeaders().getLocation();
+    }
+
+    private static long idOnShardZero(int card) {
+        return ShardRoutingDataSource.firstId(0) + 1_000_000L * ShardRoutingDataSource.MAX_SHARDS
+                + (long) card * ShardRoutingDataSource.MAX_SHARDS;
+    }
+
+    private Integer[] rowsOf(long id) {
+        Integer[] rows = new Integer[shards.shardCount()];
+        for (int shard = 0; shard < rows.length; shard++) {
+            rows[shard] = jdbcTemplate(shard).queryForObject(
+                    "SELECT COUNT(*) FROM CASH_CARD WHERE ID = ?", Integer.class, id);
+        }
+        return rows;
+    }
+
+    private JdbcTemplate jdbcTemplate(int shard) {
+        return new JdbcTemplate(shards.shard(shard));
+    }
+}
@@ -0,0 +1,51 @@
+package com.z0736190100.cardcashian;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares latency percentiles of platform-thread and virtual-thread request execution at a concurrency well
+ * above the servlet thread pool. Run with {@code ./gradlew loadTest -PjavaVersion=21}.
+ */
+@Tag("load")
+class VirtualThreadsLoadTest {
+
+    private static final int REQUESTS = 10_000;
+    private static final int CONCURRENCY = 1_000;
+
+    @Test
+    void shouldCompareP99OfPlatformAndVirtualThreads() throws Exception {
+        // also the servlet baseline for the reactive variant's ReactiveLoadTest, so it runs on any Java version
+        LoadGenerator.Result platform = measure(false);
+        System.out.println("platform threads: " + platform);
+        assertThat(platform.failures()).isZero();
+
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need a Java 21 runtime");
+        LoadGenerator.Result virtual = measure(true);
+        System.out.println("virtual threads:  " + virtual);
+        assertThat(virtual.failures()).isZero();
+    }
+
+    private LoadGenerator.Result measure(boolean virtualThreads) throws InterruptedException {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(CardcashianApplication.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--server.tomcat.threads.max=50",
+                        "--server.tomcat.max-connections=" + 2 * CONCURRENCY,
+                        // one user sends all requests, as fast as it can
+                        "--cardcashian.security.rate-limit.enabled=false",
+                        "--logging.level.root=WARN")) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            LoadGenerator load = new LoadGenerator("sarah1", "abc123");
+
+            // warm up JIT, connection pool and credentials cache
+            load.run(REQUESTS / 10, CONCURRENCY / 10, i -> LoadGenerator.get(baseUrl + "/cashcards?page=0&size=20"));
+            return load.run(REQUESTS, CONCURRENCY, i -> LoadGenerator.get(baseUrl + "/cashcards?page=0&size=20"));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.repo.CashCardRepository;
+import com.z0736190100.cardcashian.repo.CashCardWriteBehind;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"cardcashian.write-behind.enabled=true", "cardcashian.write-behind.max-delay=50ms"})
+class WriteBehindCreateTest {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    CashCardRepository cashCardRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    CashCardWriteBehind writeBehind;
+
+    @Test
+    @DirtiesContext
+    void shouldCreateConcurrentCashCardsInBatches() throws Exception {
+        long cardCount = cashCardRepository.summarizeByOwner("sarah1").cardCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<ResponseEntity<Void>>> responses = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                int amount = 100 + i;
+                responses.add(executor.submit(() -> restTemplate
+                        .withBasicAuth("sarah1", "abc123")
+                        .postForEntity("/cashcards", new CashCard(null, amount, null), Void.class)));
+            }
+            Set<URI> locations = new HashSet<>();
+            for (Future<ResponseEntity<Void>> response : responses) {
+                assertThat(response.get().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+                locations.add(response.get().getHeaders().getLocation());
+            }
+            assertThat(locations).hasSize(64);
+
+            ResponseEntity<String> created = restTemplate
+                    .withBasicAuth("sarah1", "abc123")
+                    .getForEntity(locations.iterator().next(), String.class);
+            assertThat(created.getStatusCode()).isEqualTo(HttpStatus.OK);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(cashCardRepository.summarizeByOwner("sarah1").cardCount()).isEqualTo(cardCount + 64);
+        DistributionSummary batchSizes = meterRegistry.get("cashcards.write.behind.batch.size").summary();
+        assertThat(batchSizes.totalAmount()).isEqualTo(64);
+        assertThat(batchSizes.count()).isLessThan(64);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldCommitOrRollBackABatchAsAWhole() {
+        long cardCount = cashCardRepository.summarizeByOwner("sarah1").cardCount();
+
+        // the third card breaks the NOT NULL owner column after two good ones were sent in the same batch
+        List<CompletableFuture<CashCard>> inserted = List.of(
+                writeBehind.insert(new CashCard(null, 100, "sarah1")),
+                writeBehind.insert(new CashCard(null, 200, "sarah1")),
+                writeBehind.insert(new CashCard(null, 300, null)));
+
+        assertThat(inserted).allSatisfy(future ->
+                assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class));
+        assertThat(cashCardRepository.summarizeByOwner("sarah1").cardCount()).isEqualTo(cardCount);
+    }
+}
@@ -0,0 +1,97 @@
+package com.z0736190100.cardcashian;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import com.z0736190100.cardcashian.repo.CashCardRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "cardcashian.write-behind.enabled=true",
+                "cardcashian.write-behind.max-delay=50ms",
+                "cardcashian.idempotency.store=jdbc",
+                "spring.datasource.hikari.connection-timeout=1000"})
+class WriteBehindIdempotencyTest {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    CashCardRepository cashCardRepository;
+
+    @Test
+    @DirtiesContext
+    void shouldCreateOneCashCardForConcurrentRetries() throws Exception {
+        long cardCount = cashCardRepository.summarizeByOwner("sarah1").cardCount();
+
+        List<ResponseEntity<Void>> responses = postConcurrently(16, i -> "same-key");
+
+        Set<URI> locations = new HashSet<>();
+        for (ResponseEntity<Void> response : responses) {
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+            locations.add(response.getHeaders().getLocation());
+        }
+        assertThat(locations).hasSize(1);
+        assertThat(cashCardRepository.summarizeByOwner("sarah1").cardCount()).isEqualTo(cardCount + 1);
+    }
+
+    @Test
+    @DirtiesContext
+    void shouldCreateKeyedAndQueuedCashCardsSideBySide() throws Exception {
+        long cardCount = cashCardRepository.summarizeByOwner("sarah1").cardCount();
+
+        // more keyed creates than pooled connections, while unkeyed creates wait for the writer
+        List<ResponseEntity<Void>> responses = postConcurrently(32, i -> i % 2 == 0 ? "key-" + i : null);
+
+        assertThat(responses).extracting(ResponseEntity::getStatusCode).containsOnly(HttpStatus.CREATED);
+        assertThat(responses).extracting(response -> response.getHeaders().getLocation())
+                .doesNotHaveDuplicates();
+        assertThat(cashCardRepository.summarizeByOwner("sarah1").cardCount()).isEqualTo(cardCount + 32);
+    }
+
+    private List<ResponseEntity<Void>> postConcurrently(int requests, IntFunction<String> idempotencyKey)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<ResponseEntity<Void>>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                HttpHeaders headers = new HttpHeaders();
+                String key = idempotencyKey.apply(i);
+                if (key != null) {
+                    headers.set("Idempotency-Key", key);
+                }
+                futures.add(executor.submit(() -> restTemplate
+                        .withBasicAuth("sarah1", "abc123")
+                        .exchange("/cashcards", HttpMethod.POST,
+                                new HttpEntity<>(new CashCard(null, 100, null), headers), Void.class)));
+            }
+            List<ResponseEntity<Void>> responses = new ArrayList<>();
+            for (Future<ResponseEntity<Void>> future : futures) {
+                responses.add(future.get());
+            }
+            return responses;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.z0736190100.cardcashian;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares throughput and latency percentiles of {@code POST /cashcards} with one synchronous INSERT per request
+ * against the write-behind pipeline. Run with {@code ./gradlew loadTest}.
+ */
+@Tag("load")
+class WriteBehindLoadTest {
+
+    private static final int REQUESTS = 10_000;
+    private static final int CONCURRENCY = 200;
+
+    @Test
+    void shouldCompareThroughputAndP99OfSynchronousAndWriteBehindCreates() throws Exception {
+        LoadGenerator.Result synchronous = measure(false);
+        System.out.println("synchronous INSERT: " + synchronous);
+        assertThat(synchronous.failures()).isZero();
+
+        LoadGenerator.Result writeBehind = measure(true);
+        System.out.println("write-behind:       " + writeBehind);
+        assertThat(writeBehind.failures()).isZero();
+    }
+
+    private LoadGenerator.Result measure(boolean writeBehind) throws InterruptedException {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(CardcashianApplication.class)
+                .run("--server.port=0",
+                        "--cardcashian.write-behind.enabled=" + writeBehind,
+                        "--server.tomcat.threads.max=" + CONCURRENCY,
+                        // one user sends all requests, as fast as it can
+                        "--cardcashian.security.rate-limit.enabled=false",
+                        "--logging.level.root=WARN")) {
+            String uri = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/cashcards";
+            LoadGenerator load = new LoadGenerator("sarah1", "abc123");
+
+            // warm up JIT, connection pool and credentials cache
+            load.run(REQUESTS / 10, CONCURRENCY, i -> LoadGenerator.postJson(uri, "{\"amount\": 1.00}"));
+            return load.run(REQUESTS, CONCURRENCY, i -> LoadGenerator.postJson(uri, "{\"amount\": 1.00}"));
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.z0736190100.cardcashian.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.z0736190100.cardcashian.controller.CashCardChangeBroadcaster.Event;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CashCardChangeBroadcasterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CashCardChangeBroadcaster broadcaster;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        broadcaster.destroy();
+    }
+
+    @Test
+    void shouldDeliverEveryChangeToAllSubscribersOfItsOwnerOnly() throws Exception {
+        start(16, 1000, Duration.ofMinutes(1));
+        int owners = 50;
+        int subscribersPerOwner = 100;
+        List<RecordingSink> sinks = new ArrayList<>();
+        for (int owner = 0; owner < owners; owner++) {
+            for (int i = 0; i < subscribersPerOwner; i++) {
+                RecordingSink sink = new RecordingSink();
+                broadcaster.subscribe("owner-" + owner, null, sink);
+                sinks.add(sink);
+            }
+        }
+        assertThat(broadcaster.subscriberCount()).isEqualTo(owners * subscribersPerOwner);
+
+        for (int owner = 0; owner < owners; owner++) {
+            broadcaster.created("owner-" + owner, (long) owner, 1234);
+            broadcaster.adjusted("owner-" + owner, (long) owner, -34);
+            broadcaster.deleted("owner-" + owner, (long) owner);
+        }
+
+        for (int i = 0; i < sinks.size(); i++) {
+            RecordingSink sink = sinks.get(i);
+            long id = i / subscribersPerOwner;
+            assertThat(sink.awaitEvents(4)).isTrue();
+            assertThat(sink.events()).extracting(Event::name)
+                    .containsExactly("ready", "created", "adjusted", "deleted");
+            assertThat(sink.events()).extracting(Event::data).containsExactly("{}",
+                    "{\"id\":" + id + ",\"amount\":12.34}",
+                    "{\"id\":" + id + ",\"delta\":-0.34}",
+                    "{\"id\":" + id + "}");
+        }
+    }
+
+    @Test
+    void shouldDisconnectASlowSubscriberInsteadOfBlockingTheWriter() throws Exception {
+        start(4, 1000, Duration.ofMinutes(1));
+        CountDownLatch clientReads = new CountDownLatch(1);
+        RecordingSink slow = new RecordingSink() {
+            @Override
+            public void send(Event event) throws IOException {
+                super.send(event);
+                try {
+                    clientReads.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        RecordingSink fast = new RecordingSink();
+        broadcaster.subscribe("sarah1", null, slow);
+        broadcaster.subscribe("sarah1", null, fast);
+        assertThat(slow.awaitEvents(1)).isTrue();
+
+        long publishing = 0;
+        for (int i = 0; i < 20; i++) {
+            long start = System.nanoTime();
+            broadcaster.updated("sarah1", 99L, i);
+            publishing += System.nanoTime() - start;
+            // a client that keeps up
+            assertThat(fast.awaitEvents(i + 2)).isTrue();
+        }
+        // the writer never waited for the stuck connection
+        assertThat(Duration.ofNanos(publishing)).isLessThan(Duration.ofSeconds(1));
+
+        clientReads.countDown();
+        assertThat(slow.closed.await(5, TimeUnit.SECONDS)).isTrue();
+        // only the event it was stuck on: what was queued is dropped with it, it resumes from the ring instead
+        assertThat(slow.events()).extracting(Event::name).containsExactly("ready");
+        assertThat(fast.closed.getCount()).isEqualTo(1);
+        assertThat(broadcaster.subscriberCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("cashcards.changes.dropped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReplayTheOwnersMissedEventsAfterLastEventId() throws Exception {
+        start(16, 1000, Duration.ofMinutes(1));
+        RecordingSink first = new RecordingSink();
+        Runnable close = broadcaster.subscribe("sarah1", null, first);
+        broadcaster.created("sarah1", 1L, 100);
+        assertThat(first.awaitEvents(2)).isTrue();
+        close.run();
+        String lastEventId = first.events().get(1).id();
+
+        broadcaster.updated("sarah1", 1L, 200);
+        broadcaster.updated("kumar2", 2L, 300);
+        broadcaster.deleted("sarah1", 1L);
+        RecordingSink resumed = new RecordingSink();
+        broadcaster.subscribe("sarah1", lastEventId, resumed);
+        broadcaster.adjusted("sarah1", 1L, 5);
+
+        assertThat(resumed.awaitEvents(3)).isTrue();
+        assertThat(resumed.events()).extracting(Event::name).containsExactly("updated", "deleted", "adjusted");
+        assertThat(resumed.events().get(0).data()).isEqualTo("{\"id\":1,\"amount\":2.00}");
+    }
+
+    @Test
+    void shouldResumeWithEveryEventOnceWhileTheOwnerKeepsWriting() throws Exception {
+        start(1000, 100_000, Duration.ofMinutes(1));
+        RecordingSink first = new RecordingSink();
+        broadcaster.subscribe("sarah1", null, first);
+        assertThat(first.awaitEvents(1)).isTrue();
+        // another owner's events make the ring long to look through
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 400; i++) {
+                broadcaster.updated("sarah1", 1L, i);
+                for (int other = 0; other < 200; other++) {
+                    broadcaster.updated("kumar2", 2L, other);
+                }
+            }
+        });
+        writer.start();
+
+        // part of the missed events are replayed, the rest published while the ring is looked up
+        List<RecordingSink> resumed = new ArrayList<>();
+        for (int missed = 20; missed < 400; missed += 20) {
+            assertThat(first.awaitEvents(missed)).isTrue();
+            RecordingSink sink = new RecordingSink();
+            broadcaster.subscribe("sarah1", first.events().get(0).id(), sink);
+            resumed.add(sink);
+        }
+        writer.join();
+
+        assertThat(first.awaitEvents(401)).isTrue();
+        for (RecordingSink sink : resumed) {
+            assertThat(sink.awaitEvents(400)).isTrue();
+            assertThat(sink.events()).isEqualTo(first.events().subList(1, 401));
+        }
+    }
+
+    @Test
+    void shouldTellTheClientToResetWhenTheMissedEventsAreGone() throws Exception {
+        start(16, 3, Duration.ofMinutes(1));
+        RecordingSink first = new RecordingSink();
+        Runnable close = broadcaster.subscribe("sarah1", null, first);
+        assertThat(first.awaitEvents(1)).isTrue();
+        close.run();
+        for (int i = 0; i < 4; i++) {
+            broadcaster.updated("sarah1", 1L, i);
+        }
+
+        RecordingSink tooLate = new RecordingSink();
+        broadcaster.subscribe("sarah1", first.events().get(0).id(), tooLate);
+        RecordingSink otherInstance = new RecordingSink();
+        broadcaster.subscribe("sarah1", "otherepoch-1", otherInstance);
+
+        assertThat(tooLate.awaitEvents(1)).isTrue();
+        assertThat(tooLate.events()).extracting(Event::name).containsExactly("reset");
+        assertThat(otherInstance.awaitEvents(1)).isTrue();
+        assertThat(otherInstance.events()).extracting(Event::name).containsExactly("reset");
+    }
+
+    @Test
+    void shouldSendHeartbeats() throws Exception {
+        start(16, 1000, Duration.ofMillis(20));
+        RecordingSink sink = new RecordingSink();
+        broadcaster.subscribe("sarah1", null, sink);
+
+        assertThat(sink.awaitEvents(3)).isTrue();
+        assertThat(sink.events()).contains(CashCardChangeBroadcaster.HEARTBEAT);
+    }
+
+    private void start(int bufferSize, int replayCapacity, Duration heartbeat) {
+        broadcaster = new CashCardChangeBroadcaster(
+                new CashCardChangeProperties(bufferSize, replayCapacity, 4, heartbeat, Duration.ofMinutes(30)),
+                new ObjectMapper(), meterRegistry);
+    }
+
+    private static class RecordingSink implements CashCardChangeBroadcaster.Sink {
+
+        private final List<Event> events = new ArrayList<>();
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void send(Event event) throws IOException {
+            synchronized (events) {
+                events.add(event);
+                events.notifyAll();
+            }
+        }
+
+        boolean awaitEvents(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            synchronized (events) {
+                while (events.size() < count) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(events, remaining);
+                }
+                return true;
+            }
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        List<Event> events() {
+            synchronized (events) {
+                return List.copyOf(events);
+            }
+        }
+    }
+}
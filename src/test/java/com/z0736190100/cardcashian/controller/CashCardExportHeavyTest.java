@@ -0,0 +1,56 @@
+package com.z0736190100.cardcashian.controller;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Streams a million cards through {@code GET /cashcards/export}. Runs with a small heap in the {@code heavyTest}
+ * task; the database lives in a file so that only the export itself competes for the heap.
+ */
+@Tag("heavy")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:file:./build/heavy-test/export-${random.uuid};LAZY_QUERY_EXECUTION=1",
+        "spring.datasource.type=org.springframework.jdbc.datasource.SimpleDriverDataSource",
+        "spring.sql.init.mode=always",
+        "spring.sql.init.data-locations=optional:classpath:none.sql"
+})
+class CashCardExportHeavyTest {
+
+    private static final int CARD_COUNT = 1_000_000;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldStreamAMillionCashCardsWithinASmallHeap() {
+        jdbcTemplate.update("INSERT INTO CASH_CARD (AMOUNT, OWNER) SELECT X, 'sarah1' FROM SYSTEM_RANGE(1, ?)",
+                CARD_COUNT);
+
+        Long exportedLines = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .execute("/cashcards/export", HttpMethod.GET, null, response -> {
+                    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+                    try (BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+                        return reader.lines().count();
+                    }
+                });
+
+        assertThat(exportedLines).isEqualTo(CARD_COUNT);
+    }
+}
@@ -0,0 +1,185 @@
+package com.z0736190100.cardcashian.repo;
+
+import com.z0736190100.cardcashian.model.CashCard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CashCardWriteBehindTest {
+
+    private final AtomicLong ids = new AtomicLong(1000);
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final CountDownLatch databaseAvailable = new CountDownLatch(1);
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private CashCardWriteBehind writeBehind;
+
+    @AfterEach
+    void tearDown() {
+        databaseAvailable.countDown();
+        writeBehind.stop();
+    }
+
+    @Test
+    void shouldWriteAFullBatchRightAwayAndHandOutTheIds() throws Exception {
+        databaseAvailable.countDown();
+        start(5, 100, Duration.ofMinutes(1));
+        List<CompletableFuture<CashCard>> inserted = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            inserted.add(writeBehind.insert(new CashCard(null, 100 + i, "sarah1")));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            CashCard cashCard = inserted.get(i).get(5, TimeUnit.SECONDS);
+            assertThat(cashCard.id()).isNotNull();
+            assertThat(cashCard.amount()).isEqualTo(100 + i);
+        }
+        assertThat(batchSizes).containsExactly(5);
+    }
+
+    @Test
+    void shouldWriteAPartialBatchOnceMaxDelayIsOver() throws Exception {
+        databaseAvailable.countDown();
+        start(100, 100, Duration.ofMillis(20));
+
+        CashCard cashCard = writeBehind.insert(new CashCard(null, 100, "sarah1")).get(5, TimeUnit.SECONDS);
+
+        assertThat(cashCard.id()).isNotNull();
+        assertThat(batchSizes).containsExactly(1);
+    }
+
+    @Test
+    void shouldRejectCreatesThatDoNotFitIntoTheQueue() throws Exception {
+        start(10, 2, Duration.ofMillis(50));
+        CompletableFuture<CashCard> first = writeBehind.insert(new CashCard(null, 100, "sarah1"));
+        // the writer holds the first card, the queue the next two
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        writeBehind.insert(new CashCard(null, 101, "sarah1"));
+        writeBehind.insert(new CashCard(null, 102, "sarah1"));
+
+        assertThatThrownBy(() -> writeBehind.insert(new CashCard(null, 103, "sarah1")))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        databaseAvailable.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).id()).isNotNull();
+    }
+
+    @Test
+    void shouldWriteEverythingQueuedBeforeStopping() {
+        start(10, 100, Duration.ofMillis(50));
+        List<CompletableFuture<CashCard>> inserted = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            inserted.add(writeBehind.insert(new CashCard(null, 100 + i, "sarah1")));
+        }
+        databaseAvailable.countDown();
+
+        writeBehind.stop();
+
+        assertThat(inserted).allMatch(future -> future.isDone() && !future.isCompletedExceptionally());
+        assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(20);
+        assertThatThrownBy(() -> writeBehind.insert(new CashCard(null, 100, "sarah1")))
+                .isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    void shouldFailCreatesThatAreNotWrittenInTime() throws Exception {
+        start(10, 100, Duration.ofMillis(20), Duration.ofMillis(200));
+        CompletableFuture<CashCard> written = writeBehind.insert(new CashCard(null, 100, "sarah1"));
+        // the writer is stuck on the first card, the second one waits in the queue
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<CashCard> queued = writeBehind.insert(new CashCard(null, 101, "sarah1"));
+
+        assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(TimeoutException.class);
+        assertThatThrownBy(() -> written.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(TimeoutException.class);
+
+        databaseAvailable.countDown();
+        writeBehind.stop();
+        // the card that timed out in the queue was never written
+        assertThat(batchSizes).containsExactly(1);
+    }
+
+    @Test
+    void shouldWriteAgainOnceRestarted() throws Exception {
+        databaseAvailable.countDown();
+        start(10, 100, Duration.ofMillis(20));
+        writeBehind.stop();
+
+        writeBehind.start();
+
+        assertThat(writeBehind.isRunning()).isTrue();
+        assertThat(writeBehind.insert(new CashCard(null, 100, "sarah1")).get(5, TimeUnit.SECONDS).id()).isNotNull();
+    }
+
+    @Test
+    void shouldFailEveryCreateOfAFailedBatch() {
+        writeBehind = new CashCardWriteBehind(cashCards -> {
+            throw new IllegalStateException("database is down");
+        }, new CashCardWriteBehindProperties(true, 100, 10, Duration.ofMillis(50), Duration.ofSeconds(5)), new SimpleMeterRegistry());
+        writeBehind.start();
+
+        CompletableFuture<CashCard> inserted = writeBehind.insert(new CashCard(null, 100, "sarah1"));
+
+        assertThatThrownBy(() -> inserted.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void shouldWriteEveryShardOfABatchOnItsOwn() throws Exception {
+        // owners "a..." on shard 0, "b..." on shard 1, which is down
+        writeBehind = new CashCardWriteBehind(cashCards -> {
+            if (cashCards.stream().anyMatch(cashCard -> cashCard.owner().startsWith("b"))) {
+                throw new IllegalStateException("shard 1 is down");
+            }
+            return insertAll(cashCards);
+        }, cashCard -> cashCard.owner().startsWith("a") ? 0 : 1,
+                new CashCardWriteBehindProperties(true, 100, 10, Duration.ofMillis(500), Duration.ofSeconds(5)),
+                new SimpleMeterRegistry());
+        databaseAvailable.countDown();
+        writeBehind.start();
+
+        CompletableFuture<CashCard> first = writeBehind.insert(new CashCard(null, 100, "a1"));
+        CompletableFuture<CashCard> failed = writeBehind.insert(new CashCard(null, 101, "b1"));
+        CompletableFuture<CashCard> second = writeBehind.insert(new CashCard(null, 102, "a2"));
+
+        assertThat(first.get(5, TimeUnit.SECONDS).id()).isNotNull();
+        assertThat(second.get(5, TimeUnit.SECONDS).id()).isNotNull();
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(batchSizes).containsExactly(2);
+    }
+
+    private void start(int batchSize, int queueCapacity, Duration maxDelay) {
+        start(batchSize, queueCapacity, maxDelay, Duration.ofSeconds(5));
+    }
+
+    private void start(int batchSize, int queueCapacity, Duration maxDelay, Duration timeout) {
+        writeBehind = new CashCardWriteBehind(this::insertAll,
+                new CashCardWriteBehindProperties(true, queueCapacity, batchSize, maxDelay, timeout),
+                new SimpleMeterRegistry());
+        writeBehind.start();
+    }
+
+    private List<CashCard> insertAll(List<CashCard> cashCards) {
+        writing.countDown();
+        try {
+            databaseAvailable.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        batchSizes.add(cashCards.size());
+        return cashCards.stream()
+                .map(cashCard -> new CashCard(ids.getAndIncrement(), cashCard.amount(), cashCard.owner(), 0L))
+                .toList();
+    }
+}
@@ -0,0 +1,55 @@
+package com.z0736190100.cardcashian.repo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OwnerShardRingTest {
+
+    private static final int OWNERS = 100_000;
+
+    @Test
+    void shouldSpreadOwnersEvenlyOverTheShards() {
+        OwnerShardRing ring = new OwnerShardRing(4, 128);
+
+        int[] owners = new int[4];
+        for (int i = 0; i < OWNERS; i++) {
+            owners[ring.shardOf("owner-" + i)]++;
+        }
+
+        for (int count : owners) {
+            assertThat(count).isBetween(OWNERS / 4 * 3 / 4, OWNERS / 4 * 5 / 4);
+        }
+    }
+
+    @Test
+    void shouldOnlyMoveOwnersToAnAddedShard() {
+        OwnerShardRing before = new OwnerShardRing(4, 128);
+        OwnerShardRing after = new OwnerShardRing(5, 128);
+
+        int moved = 0;
+        for (int i = 0; i < OWNERS; i++) {
+            String owner = "owner-" + i;
+            if (before.shardOf(owner) != after.shardOf(owner)) {
+                assertThat(after.shardOf(owner)).isEqualTo(4);
+                moved++;
+            }
+        }
+
+        assertThat(moved).isBetween(OWNERS / 5 * 3 / 4, OWNERS / 5 * 5 / 4);
+    }
+
+    @Test
+    void shouldMapEveryOwnerToTheOnlyShard() {
+        OwnerShardRing ring = new OwnerShardRing(1, 128);
+
+        assertThat(ring.shardOf("sarah1")).isZero();
+        assertThat(ring.shardOf("")).isZero();
+    }
+
+    @Test
+    void shouldRejectARingWithoutShards() {
+        assertThatThrownBy(() -> new OwnerShardRing(0, 128)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
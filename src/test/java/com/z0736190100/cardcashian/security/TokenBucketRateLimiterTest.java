@@ -0,0 +1,101 @@
+package com.z0736190100.cardcashian.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketRateLimiterTest {
+
+    private static final RateLimitProperties.Limit TEN_PER_SECOND = new RateLimitProperties.Limit(10, 5);
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final TokenBucketRateLimiter rateLimiter =
+            new TokenBucketRateLimiter(100, Duration.ofMinutes(10), now::get);
+
+    @Test
+    void shouldAllowABurstThenOneRequestPerInterval() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(rateLimiter.tryAcquire("sarah1", TEN_PER_SECOND)).isZero();
+        }
+        assertThat(rateLimiter.tryAcquire("sarah1", TEN_PER_SECOND)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(rateLimiter.tryAcquire("sarah1", TEN_PER_SECOND)).isZero();
+        assertThat(rateLimiter.tryAcquire("sarah1", TEN_PER_SECOND)).isPositive();
+    }
+
+    @Test
+    void shouldRefillAnIdleBucketOnlyUpToTheBurst() {
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.tryAcquire("sarah1", TEN_PER_SECOND);
+        }
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+
+        int allowed = 0;
+        while (rateLimiter.tryAcquire("sarah1", TEN_PER_SECOND) == 0) {
+            allowed++;
+        }
+        assertThat(allowed).isEqualTo(5);
+    }
+
+    @Test
+    void shouldKeepOneBucketPerKey() {
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.tryAcquire("sarah1", TEN_PER_SECOND);
+        }
+        assertThat(rateLimiter.tryAcquire("sarah1", TEN_PER_SECOND)).isPositive();
+        assertThat(rateLimiter.tryAcquire("kumar2", TEN_PER_SECOND)).isZero();
+        assertThat(rateLimiter.trackedKeys()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldNeverHandOutMoreThanTheBurstToConcurrentCallers() throws Exception {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit(10, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    int allowed = 0;
+                    for (int i = 0; i < 1000; i++) {
+                        if (rateLimiter.tryAcquire("sarah1", limit) == 0) {
+                            allowed++;
+                        }
+                    }
+                    return allowed;
+                }));
+            }
+            int allowed = 0;
+            for (Future<Integer> result : results) {
+                allowed += result.get();
+            }
+            assertThat(allowed).isEqualTo(1000);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void shouldPickTheMostGenerousLimitAmongTheRoles() {
+        RateLimitProperties.Limit others = new RateLimitProperties.Limit(1, 1);
+        RateLimitProperties properties = new RateLimitProperties(true, 100, Duration.ofMinutes(10),
+                Map.of("CARD-OWNER", TEN_PER_SECOND, "ADMIN", new RateLimitProperties.Limit(100, 100)), others);
+
+        assertThat(properties.limitFor(AuthorityUtils.createAuthorityList("ROLE_CARD-OWNER")))
+                .isEqualTo(TEN_PER_SECOND);
+        assertThat(properties.limitFor(AuthorityUtils.createAuthorityList("ROLE_CARD-OWNER", "ROLE_ADMIN")))
+                .isEqualTo(new RateLimitProperties.Limit(100, 100));
+        assertThat(properties.limitFor(AuthorityUtils.createAuthorityList("ROLE_NON-OWNER"))).isEqualTo(others);
+    }
+}